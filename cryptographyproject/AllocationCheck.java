@@ -0,0 +1,111 @@
+package cryptographyproject;
+
+import java.util.Set;
+
+// this checks that the analyzer's steady-state loop (guess, render, score,
+// full decrypt) still doesn't make garbage. it warms every operation up so
+// the JIT has done its thing, then runs it many times and asks the JVM
+// (ThreadMXBean, through PerfStats.allocatedBytes) how many bytes this thread
+// allocated. anything over the budget is a FAIL and the exit code is 1, so
+// it can be run after every change to catch new allocations sneaking back in.
+//
+// the only thing allowed to allocate is a guess: every guess is a new
+// GuessState snapshot (that's what undo/redo keeps), which is one small
+// object plus its 26-byte array.
+public class AllocationCheck {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 10_000;
+    private static final long SLACK_BYTES = 4096; // for the odd stray allocation by the JVM itself
+
+    // one thing we measure
+    private interface Operation {
+        int run(int i);
+    }
+
+    private static int failures = 0;
+    private static volatile int sink; // so the JIT can't throw the work away
+
+    /**
+     * Usage: java cryptographyproject.AllocationCheck [ciphertext file]
+     * (dictionary.txt has to be in the current folder)
+     */
+    public static void main(String[] args) {
+        String cipherFile = (args.length > 0) ? args[0] : "cipher.txt";
+        Set<String> dictionary = CryptoAnalyzer.loadDictionary("dictionary.txt");
+        if (dictionary == null) {
+            System.out.println("!! dictionary.txt not found. We need it for scoring. Exiting.");
+            return;
+        }
+        CryptoAnalyzer analyzer = new CryptoAnalyzer(cipherFile, dictionary);
+        if (!analyzer.isFileLoaded()) {
+            System.out.println("File not found or error reading file. Exiting.");
+            return;
+        }
+        if (PerfStats.allocatedBytes() == 0) {
+            System.out.println("!! This JVM can't count allocated bytes per thread, nothing to check.");
+            return;
+        }
+
+        // start from a realistic half-right key, like the one the solver's first climb gives
+        KeySolver solver = new KeySolver(new LanguageModel(dictionary));
+        analyzer.applyKey(solver.climbFromSeed(analyzer.countSegmentedGrams(9, 3, 6, 3), 0).getKey());
+        String fullText = analyzer.getFullyDecryptedText();
+        byte[] plain = new byte[analyzer.getCleanLength()];
+
+        System.out.printf("%-28s %14s %10s  %s%n", "Operation", "Bytes/op", "Budget", "Result");
+        System.out.println("---------------------------------------------------------------");
+
+        // (on an empty copy, so the guesses never clash and print a warning)
+        CryptoAnalyzer guesser = analyzer.copyWithFreshGuesses();
+        // 128 bytes per op = the GuessState snapshot every guess makes for undo/redo
+        check("guess + undo", 128, i -> {
+            guesser.makeGuess((char) ('a' + i % 26), (char) ('a' + (i * 7) % 26));
+            guesser.undoStep();
+            return 0;
+        });
+        // the two "(cached)" ones are LRU hits. this one renders after every guess,
+        // straight into a reused buffer, so it's the real render cost. the 128 bytes
+        // are the guess's GuessState snapshot, same as above; the render adds nothing.
+        char[] view = new char[guesser.getRenderedLength()];
+        check("render partial after guess", 128, i -> {
+            guesser.makeGuess((char) ('a' + i % 26), (char) ('a' + (i * 7) % 26));
+            int length = guesser.renderPartialInto(view);
+            guesser.undoStep();
+            return view[i % length];
+        });
+        check("render partial (cached)", 0, i -> analyzer.getDecryptedTextWithContext().length());
+        check("render full (cached)", 0, i -> analyzer.getFullyDecryptedText().length());
+        check("full decrypt into buffer", 0, i -> {
+            analyzer.decryptFullInto(plain);
+            return plain[i % plain.length];
+        });
+        check("score full decryption", 0, i -> analyzer.scoreFullDecryption());
+        check("score partial decryption", 0, i -> analyzer.scorePartialDecryption());
+        check("scoreText(String)", 0, i -> analyzer.scoreText(fullText));
+
+        System.out.println("---------------------------------------------------------------");
+        if (failures > 0) {
+            System.out.println("!! " + failures + " operation(s) allocate more than they should.");
+            System.exit(1);
+        }
+        System.out.println("All operations are within their allocation budget.");
+    }
+
+    private static void check(String name, long budgetPerOp, Operation operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink += operation.run(i);
+        }
+        long before = PerfStats.allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += operation.run(i);
+        }
+        long allocated = PerfStats.allocatedBytes() - before;
+
+        boolean ok = allocated <= budgetPerOp * ITERATIONS + SLACK_BYTES;
+        if (!ok) {
+            failures++;
+        }
+        System.out.printf("%-28s %14.1f %10d  %s%n", name, (double) allocated / ITERATIONS, budgetPerOp, ok ? "PASS" : "FAIL");
+    }
+}
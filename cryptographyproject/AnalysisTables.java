@@ -0,0 +1,133 @@
+package cryptographyproject;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// this holds all the frequency tables AttackMain shows, but works them out
+// lazily in the background instead of making the user wait for all of them
+// before the first prompt. each table is only computed once (the first time
+// someone asks, or when startAll() kicks them off) and then remembered.
+public class AnalysisTables {
+
+    // every table we know how to make, in the order we show them
+    public enum Table {
+        OVERALL_SINGLE("--- [Overall] Single-Letter Frequencies (All text) ---", 26, null),
+        OVERALL_DIAGRAMS("--- [Overall] Top 20 Diagram Frequencies (All text) ---", 20, null),
+        OVERALL_TRIGRAMS("--- [Overall] Top 20 Trigram Frequencies (All text) ---", 20, null),
+        C3_SINGLE("--- [ATTACK] Frequencies for C3 (Caesar) Segments Only ---", 26,
+            "==> ANALYSIS: This graph is FLAT, proving it's polyalphabetic."),
+        S6_SINGLE("--- [ATTACK] Frequencies for S6 (Substitution) Segments Only ---", 26,
+            "==> ANALYSIS: This graph is SPIKY, proving it's monoalphabetic.\n"
+            + "This is the weak point. We will now attack this part."),
+        S6_DIAGRAMS("--- [ATTACK] Top 20 Diagram Frequencies (S6 Segments Only) ---", 20, null),
+        S6_TRIGRAMS("--- [ATTACK] Top 20 Trigram Frequencies (S6 Segments Only) ---", 20, null);
+
+        private final String title;
+        private final int topN;
+        private final String note; // printed under the graph, or null
+
+        Table(String title, int topN, String note) {
+            this.title = title;
+            this.topN = topN;
+            this.note = note;
+        }
+    }
+
+    private final CryptoAnalyzer analyzer;
+    private final ExecutorService executor;
+    private final Map<Table, CompletableFuture<Map<?, Integer>>> results = new EnumMap<>(Table.class);
+    private final Set<Table> shown = EnumSet.noneOf(Table.class);
+
+    public AnalysisTables(CryptoAnalyzer analyzer) {
+        this.analyzer = analyzer;
+        // daemon threads, so a table that's still running never keeps the program alive after 'q'
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), Table.values().length));
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "analysis-table");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // starts every table in the background (does nothing for ones already started)
+    public void startAll() {
+        for (Table table : Table.values()) {
+            request(table);
+        }
+    }
+
+    // the (memoized) future for one table. the first call starts the work.
+    public synchronized CompletableFuture<Map<?, Integer>> request(Table table) {
+        return this.results.computeIfAbsent(table,
+            t -> CompletableFuture.supplyAsync(() -> compute(t), this.executor));
+    }
+
+    // the actual counting, this is the same CryptoAnalyzer call AttackMain used to make up front
+    private Map<?, Integer> compute(Table table) {
+        switch (table) {
+            case OVERALL_SINGLE:   return this.analyzer.getSingleLetterFrequencies();
+            case OVERALL_DIAGRAMS: return this.analyzer.getDiagramFrequencies();
+            case OVERALL_TRIGRAMS: return this.analyzer.getTrigramFrequencies();
+            case C3_SINGLE:        return this.analyzer.getSegmentedFrequencies(9, 0, 3);
+            case S6_SINGLE:        return this.analyzer.getSegmentedFrequencies(9, 3, 6);
+            case S6_DIAGRAMS:      return this.analyzer.getSegmentedDiagramFrequencies(9, 3, 6);
+            case S6_TRIGRAMS:      return this.analyzer.getSegmentedTrigramFrequencies(9, 3, 6);
+            default: throw new IllegalArgumentException("unknown table " + table);
+        }
+    }
+
+    // the tables that finished since we last looked and haven't been printed yet (in menu order)
+    public synchronized List<Table> takeNewlyFinished() {
+        List<Table> finished = new ArrayList<>();
+        for (Map.Entry<Table, CompletableFuture<Map<?, Integer>>> entry : this.results.entrySet()) {
+            if (entry.getValue().isDone() && !this.shown.contains(entry.getKey())) {
+                finished.add(entry.getKey());
+            }
+        }
+        return finished;
+    }
+
+    // how many tables are still being worked on
+    public synchronized int pendingCount() {
+        int pending = 0;
+        for (CompletableFuture<Map<?, Integer>> future : this.results.values()) {
+            if (!future.isDone()) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    // prints one table, waiting for it if it isn't done yet
+    public void print(Table table) {
+        Map<?, Integer> counts;
+        try {
+            counts = request(table).join();
+        } catch (CompletionException e) {
+            System.out.println("Oh no, the table \"" + table.title + "\" failed: " + e.getCause());
+            markShown(table);
+            return;
+        }
+        CryptoAnalyzer.printFrequencyMap(table.title, counts, table.topN);
+        if (table.note != null) {
+            System.out.println(table.note);
+        }
+        markShown(table);
+    }
+
+    private synchronized void markShown(Table table) {
+        this.shown.add(table);
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+}
@@ -1,6 +1,6 @@
 package cryptographyproject;
 
-import java.util.Map;
+import java.util.List;
 import java.util.Scanner;
 
 // this is the main class for our Phase 2 project.
@@ -9,8 +9,15 @@ public class AttackMain {
 
     /**
      * The main method, it's the entry point for our Phase 2 analysis.
+     * pass --stats to print timing numbers for each analysis step when you quit.
+     * pass --cipher <file> --script <file> to replay commands without prompts (see SessionReplay).
      */
     public static void main(String[] args) {
+        if (SessionReplay.isScripted(args)) {
+            SessionReplay.main(args);
+            return;
+        }
+        boolean showStats = PerfStats.enableFromArgs(args);
         Scanner userInputReader = new Scanner(System.in);
         System.out.println("--- CSCI 462: Project Phase 2 - Cryptanalysis ---");
         System.out.println("Enter the name of the ciphertext file to analyze (e.g., cipher.txt):");
@@ -27,8 +34,10 @@ public class AttackMain {
             return;
         }
 
-        System.out.println("Successfully read " + analyzer.getRawText().length() + " raw characters.");
-        System.out.println("Text cleaned. Cleaned text length: " + analyzer.getCleanText().length());
+        System.out.println("Successfully read " + analyzer.getRawLength() + " raw characters.");
+        System.out.println("Text cleaned. Cleaned text length: " + analyzer.getCleanLength()
+            + " (packed into " + analyzer.getCipherLetters().packedBytes() + " bytes, offset map "
+            + analyzer.getOffsetMapBytes() + " bytes).");
         
         // This message comes from the analyzer's constructor
         if (analyzer.isDictionaryLoaded()) {
@@ -38,72 +47,14 @@ public class AttackMain {
         }
 
 
-        // === Step 1: Run and Display Initial Analyses ===
-        
-        // --- Single-Letter Analysis (Overall) ---
-        Map<Character, Integer> singleFreqs = analyzer.getSingleLetterFrequencies();
-        CryptoAnalyzer.printFrequencyMap(
-            "--- [Overall] Single-Letter Frequencies (All text) ---", 
-            singleFreqs, 
-            26 // show all 26 letters
-        );
-        
-        // --- NEW: Diagram Analysis (Overall) ---
-        Map<String, Integer> diagramFreqs = analyzer.getDiagramFrequencies();
-         CryptoAnalyzer.printFrequencyMap(
-             "--- [Overall] Top 20 Diagram Frequencies (All text) ---",
-             diagramFreqs,
-             20 // show top 20
-         );
-
-        // --- NEW: Trigram Analysis (Overall) ---
-        Map<String, Integer> trigramFreqs = analyzer.getTrigramFrequencies();
-        CryptoAnalyzer.printFrequencyMap(
-            "--- [Overall] Top 20 Trigram Frequencies (All text) ---",
-            trigramFreqs,
-            20 // show top 20
-        );
-
-
-        System.out.println("\nPress Enter to continue to the *targeted* attack analysis...");
-        userInputReader.nextLine();
-
-        // --- Analysis of C3 (Caesar) Parts ---
-        Map<Character, Integer> caesarPartFreqs = analyzer.getSegmentedFrequencies(9, 0, 3);
-        CryptoAnalyzer.printFrequencyMap(
-            "--- [ATTACK] Frequencies for C3 (Caesar) Segments Only ---",
-            caesarPartFreqs,
-            26 // show all 26
-        );
-        System.out.println("==> ANALYSIS: This graph is FLAT, proving it's polyalphabetic.");
-
-
-        // --- Analysis of S6 (Substitution) Parts ---
-        // this is the most important graph. we save it to show the user every time.
-        Map<Character, Integer> substPartFreqs = analyzer.getSegmentedFrequencies(9, 3, 6);
-        CryptoAnalyzer.printFrequencyMap(
-            "--- [ATTACK] Frequencies for S6 (Substitution) Segments Only ---",
-            substPartFreqs,
-            26 // show all 26
-        );
-        System.out.println("==> ANALYSIS: This graph is SPIKY, proving it's monoalphabetic.");
-        System.out.println("This is the weak point. We will now attack this part.");
-        
-        // --- NEW: S6 Diagram Analysis ---
-        Map<String, Integer> s6DiagramFreqs = analyzer.getSegmentedDiagramFrequencies(9, 3, 6);
-        CryptoAnalyzer.printFrequencyMap(
-            "--- [ATTACK] Top 20 Diagram Frequencies (S6 Segments Only) ---",
-            s6DiagramFreqs,
-            20 // show top 20
-        );
-
-        // --- NEW: S6 Trigram Analysis ---
-        Map<String, Integer> s6TrigramFreqs = analyzer.getSegmentedTrigramFrequencies(9, 3, 6);
-        CryptoAnalyzer.printFrequencyMap(
-            "--- [ATTACK] Top 20 Trigram Frequencies (S6 Segments Only) ---",
-            s6TrigramFreqs,
-            20 // show top 20
-        );
+        // === Step 1: Start the Analyses in the Background ===
+        // the frequency tables used to be worked out (and printed) one after the
+        // other right here, so on a big file you had to wait for all of them.
+        // now they run in the background and show up above the menu as they finish.
+        AnalysisTables tables = new AnalysisTables(analyzer);
+        tables.startAll();
+        System.out.println("Frequency tables are being worked out in the background.");
+        System.out.println("They will show up above the menu as soon as they're ready ('t' shows all of them again).");
 
         
         // === Step 2: Begin Interactive Cracking Loop ===
@@ -111,25 +62,16 @@ public class AttackMain {
 
         // this is our main loop. it will keep running until the user quits.
         while (true) {
-            System.out.println("\n----------------------------------------------------------");
-            // at the start of each loop, we show the current state of our guesses.
-            analyzer.printGuessMap();
-
-            // now we show the *partial decryption* based on our guesses.
-            // this is the core of the "interactivity" part of the rubric.
-            System.out.println("\n--- Partially Decrypted S6 Text (C3 parts are '_') ---");
-            String partialText = analyzer.getDecryptedTextWithContext();
-            System.out.println(partialText);
-            System.out.println("----------------------------------------------------------");
-
-            // now we give the user their options.
-            System.out.println("\nEnter command:");
-            System.out.println("  (g)uess    -> (e.g., 'g h e' means 'guess Cipher H is Plain E')");
-            System.out.println("  (u)ndo     -> (e.g., 'u h' means 'undo guess for Cipher H')");
-            System.out.println("  (r)eshow   -> (reshow the S6 frequency graph)");
-            System.out.println("  (v)alidate -> (check partial text, 'v all' to show all)");
-            System.out.println("  (a)ttempt  -> (run full decryption with current guesses)");
-            System.out.println("  (q)uit     -> (exit the program)");
+            // first, print any tables that finished since last time
+            for (AnalysisTables.Table table : tables.takeNewlyFinished()) {
+                tables.print(table);
+            }
+            if (tables.pendingCount() > 0) {
+                System.out.println("\n(" + tables.pendingCount() + " frequency tables still running...)");
+            }
+
+            printScreen(analyzer);
+            printMenu();
             System.out.print("Your command: ");
 
             String commandLine = userInputReader.nextLine().trim().toLowerCase();
@@ -138,92 +80,220 @@ public class AttackMain {
                 continue; // user just pressed enter, loop again.
             }
 
-            // this logic is for the 'v all' command
-            boolean showAll = false;
-            if (commandLine.equals("v all")) {
-                commandLine = "v"; // force command to 'v'
-                showAll = true; // set our flag
+            if (!runCommand(analyzer, tables, commandLine)) {
+                // that was 'q'
+                if (showStats) {
+                    PerfStats.printSummary();
+                }
+                userInputReader.close(); // closing the scanner
+                return; // this exits the main method and stops the program.
             }
+        }
+    }
+
+    // the "screen" we show before every command: the guess map and the partial S6 text
+    static void printScreen(CryptoAnalyzer analyzer) {
+        System.out.println("\n----------------------------------------------------------");
+        // at the start of each loop, we show the current state of our guesses.
+        analyzer.printGuessMap();
 
-            char command = commandLine.charAt(0);
-            String[] parts = commandLine.split(" "); // split 'g h e' into parts
+        // now we show the *partial decryption* based on our guesses.
+        // this is the core of the "interactivity" part of the rubric.
+        System.out.println("\n--- Partially Decrypted S6 Text (C3 parts are '_') ---");
+        String partialText = analyzer.getDecryptedTextWithContext();
+        System.out.println(partialText);
+        System.out.println("----------------------------------------------------------");
+    }
+
+    static void printMenu() {
+        // now we give the user their options.
+        System.out.println("\nEnter command:");
+        System.out.println("  (g)uess    -> (e.g., 'g h e' means 'guess Cipher H is Plain E')");
+        System.out.println("  (u)ndo     -> (e.g., 'u h' means 'undo guess for Cipher H', just 'u' undoes the last step)");
+        System.out.println("  (y) redo   -> (redo the step you just undid)");
+        System.out.println("  (r)eshow   -> (reshow the S6 frequency graph)");
+        System.out.println("  (t)ables   -> (show every frequency table, waits for any still running)");
+        System.out.println("  (n)-grams  -> (e.g., 'n 5 s6' = approx top 5-letter groups, segment all/c3/s6)");
+        System.out.println("  (c)rib     -> (e.g., 'c attack' lists where 'attack' fits, 'c attack 2' uses spot #2)");
+        System.out.println("  (v)alidate -> (check partial text, 'v all' to show all)");
+        System.out.println("  (a)ttempt  -> (run full decryption with current guesses)");
+        System.out.println("  (q)uit     -> (exit the program)");
+    }
 
-            // now we figure out what the user wanted to do.
-            switch (command) {
-                case 'g': // Guess
-                    if (parts.length != 3) {
-                        System.out.println("!! ERROR: Guess command needs 3 parts. Example: g h e");
+    /**
+     * Runs one command line (like "g h e" or "v all") against the analyzer.
+     * This is shared by the interactive loop and the scripted replay mode.
+     * Returns false when the command was 'q'.
+     */
+    static boolean runCommand(CryptoAnalyzer analyzer, AnalysisTables tables, String commandLine) {
+        commandLine = commandLine.trim().toLowerCase();
+        if (commandLine.length() == 0) {
+            return true; // nothing to do
+        }
+
+        // this logic is for the 'v all' command
+        boolean showAll = false;
+        if (commandLine.equals("v all")) {
+            commandLine = "v"; // force command to 'v'
+            showAll = true; // set our flag
+        }
+
+        char command = commandLine.charAt(0);
+        String[] parts = commandLine.split(" "); // split 'g h e' into parts
+
+        // now we figure out what the user wanted to do.
+        switch (command) {
+            case 'g': // Guess
+                if (parts.length != 3) {
+                    System.out.println("!! ERROR: Guess command needs 3 parts. Example: g h e");
+                } else {
+                    char cipherChar = parts[1].charAt(0);
+                    char plainChar = parts[2].charAt(0);
+                    analyzer.makeGuess(cipherChar, plainChar);
+                    System.out.printf("==> OK. Guessing cipher '%c' = plain '%c'\n", cipherChar, plainChar);
+                }
+                break;
+            
+            case 'u': // Undo
+                if (parts.length == 1) {
+                    // just 'u' -> go back one whole step
+                    if (analyzer.undoStep()) {
+                        System.out.println("==> OK. Went back one step.");
                     } else {
-                        char cipherChar = parts[1].charAt(0);
-                        char plainChar = parts[2].charAt(0);
-                        analyzer.makeGuess(cipherChar, plainChar);
-                        System.out.printf("==> OK. Guessing cipher '%c' = plain '%c'\n", cipherChar, plainChar);
+                        System.out.println("!! Nothing to undo.");
                     }
+                } else if (parts.length != 2) {
+                    System.out.println("!! ERROR: Undo command needs 1 or 2 parts. Example: u h (or just u)");
+                } else {
+                    char cipherChar = parts[1].charAt(0);
+                    analyzer.undoGuess(cipherChar);
+                    System.out.printf("==> OK. Cleared guess for cipher '%c'.\n", cipherChar);
+                }
+                break;
+            
+            case 'y': // Redo
+                if (analyzer.redoStep()) {
+                    System.out.println("==> OK. Redid one step.");
+                } else {
+                    System.out.println("!! Nothing to redo.");
+                }
+                break;
+
+            case 'r': // Reshow S6 frequencies
+                // these wait for the table if it's still being worked out
+                tables.print(AnalysisTables.Table.S6_SINGLE);
+                // also reshow the S6 diagram/trigram maps
+                tables.print(AnalysisTables.Table.S6_DIAGRAMS);
+                tables.print(AnalysisTables.Table.S6_TRIGRAMS);
+                break;
+
+            case 't': // Show all the tables
+                for (AnalysisTables.Table table : AnalysisTables.Table.values()) {
+                    tables.print(table);
+                }
+                break;
+
+            case 'n': // Approximate long n-grams (Count-Min sketch)
+                if (parts.length < 2 || parts.length > 3) {
+                    System.out.println("!! ERROR: N-gram command needs 2 or 3 parts. Example: n 5 s6");
                     break;
-                
-                case 'u': // Undo
-                    if (parts.length != 2) {
-                        System.out.println("!! ERROR: Undo command needs 2 parts. Example: u h");
-                    } else {
-                        char cipherChar = parts[1].charAt(0);
-                        analyzer.undoGuess(cipherChar);
-                        System.out.printf("==> OK. Cleared guess for cipher '%c'.\n", cipherChar);
+                }
+                try {
+                    int n = Integer.parseInt(parts[1]);
+                    String segment = (parts.length == 3) ? parts[2] : "s6";
+                    int blockSize = segment.equals("all") ? 0 : 9;
+                    int segmentStart = segment.equals("s6") ? 3 : 0;
+                    int segmentLength = segment.equals("s6") ? 6 : 3;
+                    if (!segment.equals("all") && !segment.equals("c3") && !segment.equals("s6")) {
+                        System.out.println("!! ERROR: Segment must be all, c3 or s6.");
+                        break;
                     }
-                    break;
-                
-                case 'r': // Reshow S6 frequencies
-                    CryptoAnalyzer.printFrequencyMap(
-                        "--- [ATTACK] Frequencies for S6 (Substitution) Segments Only ---",
-                        substPartFreqs, // use the saved map
-                        26 // show all 26
-                    );
-                    // also reshow the new S6 diagram/trigram maps
-                    CryptoAnalyzer.printFrequencyMap(
-                        "--- [ATTACK] Top 20 Diagram Frequencies (S6 Segments Only) ---",
-                        s6DiagramFreqs,
-                        20 // show top 20
-                    );
+                    NGramSketch sketch = analyzer.getApproximateGramSketch(blockSize, segmentStart, segmentLength, n,
+                        NGramSketch.DEFAULT_EPSILON, NGramSketch.DEFAULT_DELTA, NGramSketch.DEFAULT_TOP_K);
                     CryptoAnalyzer.printFrequencyMap(
-                        "--- [ATTACK] Top 20 Trigram Frequencies (S6 Segments Only) ---",
-                        s6TrigramFreqs,
-                        20 // show top 20
+                        "--- [Approx] Top 20 " + n + "-gram Frequencies (" + segment + ") ---",
+                        sketch.topGrams(),
+                        20, // show top 20
+                        sketch.getTotal() // percentages out of every n-gram counted, not just the top 20
                     );
-                    break;
+                } catch (IllegalArgumentException e) {
+                    System.out.println("!! ERROR: " + e.getMessage());
+                }
+                break;
 
-                case 'v': // Validate (NEW FOR PHASE 3)
-                    System.out.println("\n--- Validating Partial S6 Text ---");
-                    // we get the partial text, then run the new validation function on it.
-                    String s6Text = analyzer.getDecryptedTextWithContext();
-                    // we pass the showAll flag here!
-                    String s6Validation = analyzer.validateText(s6Text, showAll);
-                    System.out.println(s6Validation);
+            case 'c': // Crib dragging (known plaintext)
+                if (parts.length < 2 || parts.length > 3) {
+                    System.out.println("!! ERROR: Crib command needs 2 or 3 parts. Example: c attack (or c attack 2)");
                     break;
-                
-                case 'a': // Attempt full decryption (UPDATED FOR PHASE 3)
-                    System.out.println("\n--- ATTEMPTING FULL DECRYPTION WITH CURRENT GUESSES ---");
-                    // this is the big one.
-                    // it decrypts S6, then finds the caesar key, then decrypts C3.
-                    String fullAttempt = analyzer.getFullyDecryptedText();
-                    System.out.println(fullAttempt);
-                    
-                    // --- NEW FOR PHASE 3 ---
-                    System.out.println("\n--- Dictionary Validation ---");
-                    // This will score the text based on our dictionary.txt
-                    // we pass the showAll flag here too!
-                    String validationResult = analyzer.validateText(fullAttempt, showAll);
-                    System.out.println(validationResult);
-                    // --- END OF ATTEMPT ---
+                }
+                List<CribSearch.Match> matches = analyzer.dragCrib(parts[1]);
+                if (matches.isEmpty()) {
+                    System.out.println("!! The crib '" + parts[1] + "' doesn't fit anywhere with the current guesses.");
+                    break;
+                }
+                if (parts.length == 3) {
+                    // use one of the spots: take on all the mappings it implies (one undo step)
+                    int choice;
+                    try {
+                        choice = Integer.parseInt(parts[2]);
+                    } catch (NumberFormatException e) {
+                        choice = -1;
+                    }
+                    if (choice < 1 || choice > matches.size()) {
+                        System.out.println("!! ERROR: Pick a spot between 1 and " + matches.size() + ".");
+                        break;
+                    }
+                    CribSearch.Match match = matches.get(choice - 1);
+                    analyzer.setGuessState(match.getImpliedState());
+                    System.out.printf("==> OK. Put '%s' at offset %d, that added %d letters.\n",
+                        parts[1], match.getOffset(), match.getNewMappings());
                     break;
+                }
+                System.out.println("\n--- Crib '" + parts[1] + "' fits in " + matches.size() + " spots ---");
+                for (int i = 0; i < Math.min(20, matches.size()); i++) {
+                    CribSearch.Match match = matches.get(i);
+                    System.out.printf("  #%-3d offset %6d (block %d, pos %d, file byte %d): +%d letters, shifts %s%n",
+                        i + 1, match.getOffset(), match.getOffset() / 9, match.getAlignment(),
+                        analyzer.getRawOffset(match.getOffset()), match.getNewMappings(), match.getShifts());
+                }
+                if (matches.size() > 20) {
+                    System.out.println("  ... and " + (matches.size() - 20) + " more (a longer crib narrows it down).");
+                }
+                break;
 
-                case 'q': // Quit
-                    System.out.println("Exiting analyzer. Goodbye.");
-                    userInputReader.close(); // closing the scanner
-                    return; // this exits the main method and stops the program.
+            case 'v': // Validate (NEW FOR PHASE 3)
+                System.out.println("\n--- Validating Partial S6 Text ---");
+                // we validate the partial text (the analyzer remembers results per guess state).
+                // we pass the showAll flag here!
+                String s6Validation = analyzer.validatePartialText(showAll);
+                System.out.println(s6Validation);
+                break;
+            
+            case 'a': // Attempt full decryption (UPDATED FOR PHASE 3)
+                System.out.println("\n--- ATTEMPTING FULL DECRYPTION WITH CURRENT GUESSES ---");
+                // this is the big one.
+                // it decrypts S6, then finds the caesar key, then decrypts C3.
+                String fullAttempt = analyzer.getFullyDecryptedText();
+                System.out.println(fullAttempt);
+                
+                // --- NEW FOR PHASE 3 ---
+                System.out.println("\n--- Dictionary Validation ---");
+                // This will score the text based on our dictionary.txt
+                // we pass the showAll flag here too!
+                String validationResult = analyzer.validateFullText(showAll);
+                System.out.println(validationResult);
+                // --- END OF ATTEMPT ---
+                break;
 
-                default:
-                    System.out.println("!! ERROR: Unknown command. Try 'g', 'u', 'r', 'v', 'a', or 'q'.");
-                    break;
-            }
+            case 'q': // Quit
+                System.out.println("Exiting analyzer. Goodbye.");
+                tables.shutdown();
+                return false; // tells the caller to stop
+
+            default:
+                System.out.println("!! ERROR: Unknown command. Try 'g', 'u', 'y', 'r', 't', 'n', 'c', 'v', 'a', or 'q'.");
+                break;
         }
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,409 @@
+package cryptographyproject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+// this scores LOTS of candidate keys at once, for automated searches.
+// validateText scores one text per call, on one thread, and gives back a
+// String for people to read. a search wants thousands of numbers per second.
+//
+// so here:
+//   - we don't decrypt the whole text per candidate, only some sample
+//     "windows" (a few blocks in a row, spread out over the ciphertext).
+//     the windows are picked once and their cipher letters copied out, so
+//     each candidate only touches a couple of thousand letters.
+//   - every candidate gets a dictionary score (WordScorer, same rules as
+//     scoreText) and an n-gram score (LanguageModel trigrams), and the two
+//     are mixed into one number.
+//   - the candidates are split into slices that the worker threads pull off
+//     a counter, each thread with its own scratch buffers.
+//   - the answers come back as plain int/double arrays (one slot per
+//     candidate), and a shared top-N list is updated as soon as each
+//     candidate is scored, so you can look at the best ones while it runs.
+public class BatchScorer {
+
+    public static final int DEFAULT_WINDOW_BLOCKS = 8;  // 72 letters per window
+    public static final int DEFAULT_WINDOW_COUNT = 32;  // so about 2300 letters sampled
+
+    private static final int SLICE = 64;           // candidates a thread takes at a time
+    private static final double WORD_WEIGHT = 1.0; // how much the dictionary counts next to the n-grams
+
+    // the scores for one batch, slot i = candidate i
+    public static final class Results {
+        private final int[] wordScores;
+        private final double[] ngramScores;
+        private final double[] scores;
+        private final TopCandidates top;
+
+        Results(int size, TopCandidates top) {
+            this.wordScores = new int[size];
+            this.ngramScores = new double[size];
+            this.scores = new double[size];
+            this.top = top;
+        }
+
+        public int size() { return this.scores.length; }
+        public int[] getWordScores() { return this.wordScores; }      // dictionary score on the sample
+        public double[] getNgramScores() { return this.ngramScores; } // average trigram log-probability
+        public double[] getScores() { return this.scores; }           // the two mixed, higher is better
+        public TopCandidates getTop() { return this.top; }
+    }
+
+    // the best N candidates seen so far. it's a min-heap on the score, so the
+    // weakest of the best is always at the top and easy to kick out.
+    // safe to read from another thread while a batch is running.
+    public static final class TopCandidates {
+        private final double[] heapScores;
+        private final GuessState[] heapStates;
+        private int size;
+        private volatile double entryScore = Double.NEGATIVE_INFINITY; // what it takes to get in right now
+
+        public TopCandidates(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("the top list needs room for at least 1 candidate");
+            }
+            this.heapScores = new double[capacity];
+            this.heapStates = new GuessState[capacity];
+        }
+
+        // cheap check without the lock, so most candidates never have to wait for it
+        boolean couldEnter(double score) {
+            return score > this.entryScore;
+        }
+
+        // a state that's already in the list isn't added twice (searches revisit keys a lot)
+        public synchronized void offer(GuessState state, double score) {
+            for (int k = 0; k < this.size; k++) {
+                if (this.heapStates[k].equals(state)) {
+                    return;
+                }
+            }
+            if (this.size < this.heapScores.length) {
+                int i = this.size++;
+                this.heapScores[i] = score;
+                this.heapStates[i] = state;
+                siftUp(i);
+            } else if (score > this.heapScores[0]) {
+                this.heapScores[0] = score;
+                this.heapStates[0] = state;
+                siftDown(0);
+            } else {
+                return;
+            }
+            if (this.size == this.heapScores.length) {
+                this.entryScore = this.heapScores[0];
+            }
+        }
+
+        // the candidates, best first
+        public synchronized List<GuessState> best() {
+            Integer[] order = sortedOrder();
+            List<GuessState> states = new ArrayList<>(this.size);
+            for (int i : order) {
+                states.add(this.heapStates[i]);
+            }
+            return states;
+        }
+
+        // their scores, best first (same order as best())
+        public synchronized double[] bestScores() {
+            Integer[] order = sortedOrder();
+            double[] scores = new double[this.size];
+            for (int k = 0; k < order.length; k++) {
+                scores[k] = this.heapScores[order[k]];
+            }
+            return scores;
+        }
+
+        public synchronized int size() { return this.size; }
+
+        private Integer[] sortedOrder() {
+            Integer[] order = new Integer[this.size];
+            for (int i = 0; i < this.size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(this.heapScores[b], this.heapScores[a]));
+            return order;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (this.heapScores[parent] <= this.heapScores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < this.size && this.heapScores[left] < this.heapScores[smallest]) {
+                    smallest = left;
+                }
+                if (right < this.size && this.heapScores[right] < this.heapScores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double score = this.heapScores[a];
+            this.heapScores[a] = this.heapScores[b];
+            this.heapScores[b] = score;
+            GuessState state = this.heapStates[a];
+            this.heapStates[a] = this.heapStates[b];
+            this.heapStates[b] = state;
+        }
+    }
+
+    // === The sample (picked once, read-only after the constructor) ===
+    private final byte[] sampleCodes;   // the cipher letter codes of every window, one after the other
+    private final int[] windowStarts;   // where each window starts in sampleCodes
+    private final int[] windowLengths;  // how many letters each window has
+    private final int sampleLetters;
+    private final int longestWindow;
+
+    private final WordScorer words;     // null = no dictionary, n-grams only
+    private final LanguageModel model;
+    private final double unknownTrigramLogProb; // what a trigram with an unknown letter counts as
+
+    /**
+     * Picks windowCount windows of windowBlocks 9-letter blocks, spread evenly
+     * over the ciphertext (or the whole text, if it's shorter than that).
+     * words can be null to score with the n-gram model only.
+     */
+    public BatchScorer(PackedLetters cipherLetters, WordScorer words, LanguageModel model, int windowBlocks, int windowCount) {
+        if (windowBlocks < 1 || windowCount < 1) {
+            throw new IllegalArgumentException("need at least 1 window of at least 1 block");
+        }
+        this.words = words;
+        this.model = model;
+
+        int textLength = cipherLetters.length();
+        int totalBlocks = (textLength + 8) / 9;
+        int windows = (windowBlocks * windowCount >= totalBlocks) ? 1 : windowCount;
+        int step = (windows == 1) ? 0 : totalBlocks / windows; // at least windowBlocks here
+        this.windowStarts = new int[windows];
+        this.windowLengths = new int[windows];
+        int total = 0;
+        for (int w = 0; w < windows; w++) {
+            int start = w * step * 9;
+            int length = (windows == 1) ? textLength : Math.min(windowBlocks * 9, textLength - start);
+            this.windowStarts[w] = total;
+            this.windowLengths[w] = length;
+            total += length;
+        }
+        this.sampleCodes = new byte[total];
+        for (int w = 0; w < windows && total > 0; w++) {
+            cipherLetters.copyCodes(w * step * 9, this.windowLengths[w], this.sampleCodes, this.windowStarts[w]);
+        }
+        this.sampleLetters = total;
+        int longest = 0;
+        for (int length : this.windowLengths) {
+            longest = Math.max(longest, length);
+        }
+        this.longestWindow = longest;
+
+        // an unknown letter should never look better than the worst real trigram
+        double worst = 0;
+        for (int i = 0; i < 26 * 26 * 26; i++) {
+            worst = Math.min(worst, model.trigramLogProb(i));
+        }
+        this.unknownTrigramLogProb = worst;
+    }
+
+    public int getSampleLetters() { return this.sampleLetters; }
+    public int getWindowCount() { return this.windowStarts.length; }
+
+    // === Scoring a batch ===
+
+    // scores every candidate and keeps the best topN
+    public Results score(List<GuessState> candidates, int topN) {
+        return score(candidates, new TopCandidates(topN));
+    }
+
+    /**
+     * Scores every candidate in parallel. 'top' is updated while it runs, and
+     * can be shared between batches to keep one running top-N for a whole search.
+     */
+    public Results score(List<GuessState> candidates, TopCandidates top) {
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.BATCH_SCORING);
+        Results results = new Results(candidates.size(), top);
+        int slices = (candidates.size() + SLICE - 1) / SLICE;
+        int threads = Math.max(1, Math.min(slices, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger nextSlice = new AtomicInteger();
+
+        // one worker per thread, each pulls slices until there are none left
+        IntStream.range(0, threads).parallel().forEach(t -> {
+            Worker worker = new Worker();
+            int slice;
+            while ((slice = nextSlice.getAndIncrement()) < slices) {
+                int end = Math.min(candidates.size(), (slice + 1) * SLICE);
+                for (int i = slice * SLICE; i < end; i++) {
+                    worker.score(candidates.get(i), i, results);
+                }
+            }
+        });
+        PerfStats.end(span, (long) candidates.size() * this.sampleLetters);
+        return results;
+    }
+
+    // one thread's scratch space
+    private final class Worker {
+        private final byte[] cipherToPlain = new byte[26];
+        private final byte[] plain = new byte[longestWindow];
+        private final WordScorer wordScratch = (words == null) ? null : words.withFreshScratch();
+
+        void score(GuessState state, int slot, Results results) {
+            state.copyInto(this.cipherToPlain);
+            int wordScore = 0;
+            double logProb = 0;
+            int trigrams = 0;
+
+            for (int w = 0; w < windowStarts.length; w++) {
+                int length = windowLengths[w];
+                decodeWindow(windowStarts[w], length);
+                if (this.wordScratch != null) {
+                    wordScore += this.wordScratch.scoreBlocks(this.plain, length, true);
+                }
+                for (int i = 2; i < length; i++) {
+                    int a = this.plain[i - 2];
+                    int b = this.plain[i - 1];
+                    int c = this.plain[i];
+                    logProb += (a < 0 || b < 0 || c < 0)
+                        ? unknownTrigramLogProb
+                        : model.trigramLogProb((a * 26 + b) * 26 + c);
+                    trigrams++;
+                }
+            }
+
+            double ngramScore = (trigrams == 0) ? 0 : logProb / trigrams;
+            double score = ngramScore + WORD_WEIGHT * wordScore / Math.max(1, sampleLetters);
+            results.wordScores[slot] = wordScore;
+            results.ngramScores[slot] = ngramScore;
+            results.scores[slot] = score;
+            if (results.top.couldEnter(score)) {
+                results.top.offer(state, score);
+            }
+        }
+
+        // same rules as CryptoAnalyzer's full decryption: S6 straight from the
+        // guesses, C3 only once the block's whole S6 part is known
+        private void decodeWindow(int start, int length) {
+            for (int i = 0; i < length; i += 9) {
+                int blockEnd = Math.min(i + 9, length);
+                boolean s6IsFullyGuessed = (blockEnd == i + 9);
+                for (int j = i + 3; j < blockEnd; j++) {
+                    this.plain[j] = this.cipherToPlain[sampleCodes[start + j]];
+                    if (this.plain[j] < 0) {
+                        s6IsFullyGuessed = false;
+                    }
+                }
+                int shiftKey = s6IsFullyGuessed ? this.plain[i + 3] : -1;
+                for (int j = i; j < Math.min(i + 3, blockEnd); j++) {
+                    this.plain[j] = (shiftKey < 0) ? -1 : (byte) ((sampleCodes[start + j] - shiftKey + 26) % 26);
+                }
+            }
+        }
+    }
+
+    /**
+     * Usage: java cryptographyproject.BatchScorer <ciphertext file> [candidates] [windows] [blocks per window]
+     * Makes lots of candidate keys near a solver key, scores them all in one
+     * batch, and compares the speed with scoring them one at a time.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: <ciphertext file> [candidates] [windows] [blocks per window]");
+            return;
+        }
+        int candidateCount = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+        int windows = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_WINDOW_COUNT;
+        int windowBlocks = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_WINDOW_BLOCKS;
+
+        Set<String> dictionary = CryptoAnalyzer.loadDictionary("dictionary.txt");
+        if (dictionary == null) {
+            System.out.println("!! dictionary.txt not found. We need it for scoring. Exiting.");
+            return;
+        }
+        CryptoAnalyzer analyzer = new CryptoAnalyzer(args[0], dictionary);
+        if (!analyzer.isFileLoaded()) {
+            System.out.println("File not found or error reading file. Exiting.");
+            return;
+        }
+        LanguageModel model = new LanguageModel(dictionary);
+
+        // === Step 1: candidates = a solver key plus lots of keys 1-3 swaps away from it ===
+        byte[] base = new KeySolver(model).climbFromSeed(analyzer.countSegmentedGrams(9, 3, 6, 3), 0).getKey();
+        Random random = new Random(462);
+        Set<GuessState> seen = new HashSet<>();
+        List<GuessState> candidates = new ArrayList<>(candidateCount);
+        candidates.add(GuessState.fromKey(base));
+        seen.add(candidates.get(0));
+        int attempts = 0;
+        while (candidates.size() < candidateCount && attempts++ < candidateCount * 10) {
+            byte[] key = base.clone();
+            for (int s = 1 + random.nextInt(3); s > 0; s--) {
+                int i = random.nextInt(26);
+                int j = random.nextInt(26);
+                byte swap = key[i];
+                key[i] = key[j];
+                key[j] = swap;
+            }
+            GuessState candidate = GuessState.fromKey(key);
+            if (seen.add(candidate)) {
+                candidates.add(candidate);
+            }
+        }
+
+        // === Step 2: the batch ===
+        BatchScorer batch = analyzer.newBatchScorer(model, windowBlocks, windows);
+        batch.score(candidates.subList(0, Math.min(2000, candidates.size())), 10); // warm up
+        long start = System.nanoTime();
+        Results results = batch.score(candidates, 10);
+        double batchSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Batch: %d candidates on %d sampled letters (%d windows) in %.1f ms = %.0f candidates/s%n",
+            candidates.size(), batch.getSampleLetters(), batch.getWindowCount(), batchSeconds * 1000,
+            candidates.size() / batchSeconds);
+
+        // === Step 3: the old way, one full text at a time, for comparison ===
+        int oneByOne = Math.min(200, candidates.size());
+        CryptoAnalyzer single = analyzer.copyWithFreshGuesses();
+        start = System.nanoTime();
+        for (int i = 0; i < oneByOne; i++) {
+            single.setGuessState(candidates.get(i));
+            single.scoreText(single.getFullyDecryptedText());
+        }
+        double singleSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("One at a time (scoreText on the full text): %.0f candidates/s%n", oneByOne / singleSeconds);
+
+        // === Step 4: the best ones, with their full-text dictionary score to compare ===
+        System.out.println("\n--- Top " + results.getTop().size() + " candidates ---");
+        System.out.printf("  %-28s %10s %12s%n", "key (cipher a..z)", "score", "full words");
+        List<GuessState> best = results.getTop().best();
+        double[] bestScores = results.getTop().bestScores();
+        for (int k = 0; k < best.size(); k++) {
+            single.setGuessState(best.get(k));
+            System.out.printf("  %-28s %10.4f %12d%n", best.get(k), bestScores[k], single.scoreFullDecryption());
+        }
+        single.setGuessState(candidates.get(0));
+        System.out.printf("  (the solver key itself: score %.4f, full words %d)%n",
+            results.getScores()[0], single.scoreFullDecryption());
+    }
+}
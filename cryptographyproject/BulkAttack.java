@@ -0,0 +1,216 @@
+package cryptographyproject;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// this is the "many files, one key" attack.
+// all our cipher.txt-style files use the same substTable, so instead of
+// cracking them one at a time we add up the S6 trigram counts of *every* file.
+// more text = a much clearer frequency signal, so the key comes out easier.
+// then we crack the key once and decrypt all the files at the same time.
+public class BulkAttack {
+
+    // what we found out about one file
+    public static final class FileResult {
+        private final String name;
+        private final int letters;
+        private final int wordScore;
+        private final String decrypted;
+
+        FileResult(String name, int letters, int wordScore, String decrypted) {
+            this.name = name;
+            this.letters = letters;
+            this.wordScore = wordScore;
+            this.decrypted = decrypted;
+        }
+
+        public String getName() { return this.name; }
+        public int getLetters() { return this.letters; }
+        public int getWordScore() { return this.wordScore; }
+        public String getDecrypted() { return this.decrypted; }
+    }
+
+    private final Set<String> dictionary;
+    private final KeySolver solver;
+    private final ExecutorService pool;
+
+    // the pool is a work-stealing pool, so a few big files don't hold up the small ones
+    public BulkAttack(Set<String> dictionary, LanguageModel model) {
+        this.dictionary = dictionary;
+        this.solver = new KeySolver(model);
+        this.pool = Executors.newWorkStealingPool();
+    }
+
+    // === Step 1: read every file in parallel ===
+    public List<CryptoAnalyzer> loadAll(List<Path> files) throws InterruptedException, ExecutionException {
+        List<Callable<CryptoAnalyzer>> tasks = new ArrayList<>();
+        for (Path file : files) {
+            tasks.add(() -> new CryptoAnalyzer(file.toString(), this.dictionary));
+        }
+        List<CryptoAnalyzer> analyzers = new ArrayList<>();
+        for (Future<CryptoAnalyzer> future : this.pool.invokeAll(tasks)) {
+            analyzers.add(future.get());
+        }
+        return analyzers;
+    }
+
+    // === Step 2: add up the S6 trigram counts of all the files ===
+    public int[] poolS6Trigrams(List<CryptoAnalyzer> analyzers) throws InterruptedException, ExecutionException {
+        List<Callable<int[]>> tasks = new ArrayList<>();
+        for (CryptoAnalyzer analyzer : analyzers) {
+            if (analyzer.isFileLoaded()) {
+                tasks.add(() -> analyzer.countSegmentedGrams(9, 3, 6, 3));
+            }
+        }
+        // the counts stay ints (that's what KeySolver and the workers take), so with
+        // enough big files a common trigram stops at Integer.MAX_VALUE instead of
+        // wrapping around to a negative count
+        int[] pooled = new int[26 * 26 * 26];
+        for (Future<int[]> future : this.pool.invokeAll(tasks)) {
+            int[] counts = future.get();
+            for (int i = 0; i < pooled.length; i++) {
+                pooled[i] = (int) Math.min(Integer.MAX_VALUE, (long) pooled[i] + counts[i]);
+            }
+        }
+        return pooled;
+    }
+
+    // === Step 3: crack the shared key once ===
+    public KeySolver.Result recoverSharedKey(int[] pooledTrigrams, int restarts) {
+        return this.solver.solve(pooledTrigrams, 0, restarts);
+    }
+
+    // === Step 4: decrypt every file with that key, all at once ===
+    public List<FileResult> decryptAll(List<Path> files, List<CryptoAnalyzer> analyzers, byte[] key)
+            throws InterruptedException, ExecutionException {
+        List<Callable<FileResult>> tasks = new ArrayList<>();
+        for (int i = 0; i < analyzers.size(); i++) {
+            CryptoAnalyzer analyzer = analyzers.get(i);
+            String name = files.get(i).getFileName().toString();
+            if (!analyzer.isFileLoaded()) {
+                continue;
+            }
+            tasks.add(() -> {
+                analyzer.applyKey(key);
+                String decrypted = analyzer.getFullyDecryptedText();
+                return new FileResult(name, analyzer.getCleanLength(), analyzer.scoreText(decrypted), decrypted);
+            });
+        }
+        List<FileResult> results = new ArrayList<>();
+        for (Future<FileResult> future : this.pool.invokeAll(tasks)) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    // every regular file in the folder, sorted by name so the report is stable
+    private static List<Path> listFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry)) {
+                    files.add(entry);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(Path::toString));
+        return files;
+    }
+
+    /**
+     * Usage: java cryptographyproject.BulkAttack <folder of ciphertexts> [restarts] [output folder]
+     * (dictionary.txt has to be in the current folder, same as AttackMain)
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: <folder of ciphertexts> [restarts] [output folder]");
+            return;
+        }
+        int restarts;
+        try {
+            restarts = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        } catch (NumberFormatException e) {
+            restarts = 0; // same as any other bad number, see below
+        }
+        if (restarts < 1) {
+            System.out.println("!! restarts has to be a number, at least 1.");
+            System.out.println("Usage: <folder of ciphertexts> [restarts] [output folder]");
+            return;
+        }
+        Path outputFolder = (args.length > 2) ? Paths.get(args[2]) : null;
+
+        Set<String> dictionary = CryptoAnalyzer.loadDictionary("dictionary.txt");
+        if (dictionary == null) {
+            System.out.println("!! dictionary.txt not found. We need it for the language model. Exiting.");
+            return;
+        }
+
+        BulkAttack attack = null;
+        try {
+            attack = new BulkAttack(dictionary, new LanguageModel(dictionary));
+            List<Path> files = listFiles(Paths.get(args[0]));
+            System.out.println("Found " + files.size() + " files in " + args[0]);
+
+            long start = System.nanoTime();
+            List<CryptoAnalyzer> analyzers = attack.loadAll(files);
+            int[] pooled = attack.poolS6Trigrams(analyzers);
+            long totalTrigrams = 0;
+            for (int count : pooled) {
+                totalTrigrams += count;
+            }
+            System.out.printf("Loaded and pooled %d S6 trigrams in %.1f ms%n", totalTrigrams, (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            KeySolver.Result key = attack.recoverSharedKey(pooled, restarts);
+            System.out.printf("Recovered shared key in %.1f ms (score %.1f)%n", (System.nanoTime() - start) / 1e6, key.getScore());
+            System.out.println("  cipher: abcdefghijklmnopqrstuvwxyz");
+            System.out.println("  plain : " + key.keyString());
+
+            start = System.nanoTime();
+            List<FileResult> results = attack.decryptAll(files, analyzers, key.getKey());
+            System.out.printf("Decrypted %d files in %.1f ms%n", results.size(), (System.nanoTime() - start) / 1e6);
+
+            System.out.println("\n--- Per-file Results ---");
+            System.out.printf("%-30s %10s %12s  %s%n", "File", "Letters", "Word Score", "Preview");
+            for (FileResult result : results) {
+                String preview = result.getDecrypted();
+                if (preview.length() > 40) {
+                    preview = preview.substring(0, 40) + "...";
+                }
+                System.out.printf("%-30s %10d %12d  %s%n", result.getName(), result.getLetters(), result.getWordScore(), preview);
+
+                if (outputFolder != null) {
+                    Files.createDirectories(outputFolder);
+                    Files.write(outputFolder.resolve(result.getName() + ".decrypted.txt"), result.getDecrypted().getBytes());
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Oh no, error reading the folder: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted, stopping.");
+        } catch (ExecutionException e) {
+            System.out.println("Oh no, a file failed: " + e.getCause());
+        } finally {
+            if (attack != null) {
+                attack.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package cryptographyproject;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// this is an optional file format for big encrypted archives.
+// cipher.txt is just one long line of letters, so to read any part of it you
+// have to decrypt the whole thing. but every 9-letter block can be decrypted on
+// its own, so if we know where the blocks are we can jump straight to them.
+//
+// File layout (all numbers big-endian, like DataOutputStream writes them):
+//   int    magic        "HC91"
+//   short  version      1
+//   long   plainLength  number of real plaintext letters (no padding)
+//   int    chunkBlocks  how many 9-letter blocks go in one chunk
+//   int    chunkCount
+//   chunk index, one entry per chunk:
+//     long offset       where the chunk starts, counted from the start of the data
+//     int  length       chunk length in letters (only the last one can be shorter)
+//     int  crc32        checksum of the chunk's ciphertext bytes
+//   data: the ciphertext letters as plain ASCII bytes, chunk after chunk
+//
+// the key is NOT stored in the file (it's the secret), so whoever opens a
+// container made with a non-default key has to pass the same CipherKey.
+public class CipherContainer implements Closeable {
+
+    private static final int MAGIC = 0x48433931; // "HC91"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 8 + 4 + 4;
+    private static final int INDEX_ENTRY_BYTES = 8 + 4 + 4;
+
+    // 4096 blocks = 36864 letters per chunk, small enough to check quickly
+    public static final int DEFAULT_CHUNK_BLOCKS = 4096;
+    // a chunk's length in letters has to fit in an int
+    public static final int MAX_CHUNK_BLOCKS = Integer.MAX_VALUE / 9;
+    // the whole chunk index is read in one go, so it has to fit in one buffer
+    private static final int MAX_CHUNKS = (Integer.MAX_VALUE - HEADER_BYTES) / INDEX_ENTRY_BYTES;
+    // the writer cleans and encrypts this many blocks at a time
+    private static final int BUFFER_BLOCKS = 4096;
+    // decryptRange builds one String, so that's the most it can hand back at once
+    public static final long MAX_RANGE_LETTERS = Integer.MAX_VALUE - 8;
+
+    private final FileChannel channel;
+    private final CipherKey key;
+    private final long plainLength;
+    private final int chunkBlocks;
+    private final long[] chunkOffsets;
+    private final int[] chunkLengths;
+    private final int[] chunkChecksums;
+    private final long dataStart;
+
+    // opens a container and reads its header and chunk index (not the data)
+    public CipherContainer(Path file) throws IOException {
+        this(file, CipherKey.DEFAULT);
+    }
+
+    // same, for a container that was written with another key
+    public CipherContainer(Path file, CipherKey key) throws IOException {
+        this.key = key;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a cipher container: " + file);
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported container version " + version + " in " + file);
+            }
+            this.plainLength = header.getLong();
+            this.chunkBlocks = header.getInt();
+            int chunkCount = header.getInt();
+
+            // === check the header before we trust any of it ===
+            // (a damaged or hand-made file shouldn't get us to allocate
+            // something huge or read past the end)
+            if (this.chunkBlocks <= 0 || this.chunkBlocks > MAX_CHUNK_BLOCKS) {
+                throw new IOException("Bad chunk size " + this.chunkBlocks + " in " + file);
+            }
+            if (chunkCount < 0 || chunkCount > MAX_CHUNKS) {
+                throw new IOException("Bad chunk count " + chunkCount + " in " + file);
+            }
+            long indexBytes = (long) chunkCount * INDEX_ENTRY_BYTES;
+            this.dataStart = HEADER_BYTES + indexBytes;
+            long dataLength = this.channel.size() - this.dataStart;
+            if (dataLength < 0) {
+                throw new IOException("The chunk index runs past the end of " + file);
+            }
+            if (this.plainLength < 0 || this.plainLength > dataLength) {
+                throw new IOException("Bad plaintext length " + this.plainLength + " in " + file);
+            }
+            long paddedLength = (this.plainLength + 8) / 9 * 9;
+            if (paddedLength > dataLength) {
+                throw new IOException("Bad plaintext length " + this.plainLength + " in " + file);
+            }
+            long chunkLetters = (long) this.chunkBlocks * 9;
+            if (chunkCount != (paddedLength + chunkLetters - 1) / chunkLetters) {
+                throw new IOException("Chunk count " + chunkCount + " doesn't match the plaintext length in " + file);
+            }
+
+            ByteBuffer index = readFully(HEADER_BYTES, (int) indexBytes);
+            this.chunkOffsets = new long[chunkCount];
+            this.chunkLengths = new int[chunkCount];
+            this.chunkChecksums = new int[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                this.chunkOffsets[c] = index.getLong();
+                this.chunkLengths[c] = index.getInt();
+                this.chunkChecksums[c] = index.getInt();
+                // decryptRange works out where a block is from chunkBlocks alone,
+                // so every chunk has to be exactly where write() puts it
+                long start = c * chunkLetters;
+                if (this.chunkOffsets[c] != start || this.chunkLengths[c] != Math.min(chunkLetters, paddedLength - start)) {
+                    throw new IOException("Bad index entry for chunk " + c + " in " + file);
+                }
+            }
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    // --- Getters ---
+    public long getPlainLength() { return this.plainLength; }
+    public int getChunkCount() { return this.chunkOffsets.length; }
+    public int getChunkBlocks() { return this.chunkBlocks; }
+
+    // =========================================================================
+    // === Writing
+    // =========================================================================
+
+    // encrypts the plaintext (same cleaning and padding as goEncrypt) and
+    // writes it out as a container.
+    public static void write(Path file, String rawPlainText, int chunkBlocks) throws IOException {
+        write(file, rawPlainText, chunkBlocks, CipherKey.DEFAULT);
+    }
+
+    public static void write(Path file, String rawPlainText, int chunkBlocks, CipherKey key) throws IOException {
+        write(file, new StringReader(rawPlainText), chunkBlocks, key);
+    }
+
+    // the streaming version: the plaintext is read, cleaned, encrypted and written
+    // a few KB at a time, so the input can be as big as the disk. the only thing
+    // we keep for the whole file is one CRC per chunk.
+    //
+    // the catch is that the index comes BEFORE the data and we only know how many
+    // chunks there are at the end. so the ciphertext goes into a temp file next to
+    // the container first, and then header + index + that data go into the real file.
+    public static void write(Path file, Reader rawPlainText, int chunkBlocks, CipherKey key) throws IOException {
+        if (chunkBlocks <= 0 || chunkBlocks > MAX_CHUNK_BLOCKS) {
+            throw new IllegalArgumentException("chunkBlocks must be between 1 and " + MAX_CHUNK_BLOCKS);
+        }
+        int chunkLetters = chunkBlocks * 9;
+        Path parent = file.toAbsolutePath().getParent();
+        Path data = Files.createTempFile(parent, ".container-", ".tmp");
+        try {
+            // === Step 1: clean, pad, encrypt and checksum into the temp file ===
+            ChunkWriter chunks = new ChunkWriter(data, chunkLetters);
+            long plainLength;
+            try {
+                plainLength = encryptInto(rawPlainText, key, chunks);
+            } finally {
+                chunks.close();
+            }
+            long paddedLength = chunks.getLength();
+            int chunkCount = chunks.getChunkCount();
+
+            // === Step 2: header and chunk index, then the data behind them ===
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeLong(plainLength);
+                out.writeInt(chunkBlocks);
+                out.writeInt(chunkCount);
+
+                for (int c = 0; c < chunkCount; c++) {
+                    long start = (long) c * chunkLetters;
+                    out.writeLong(start);
+                    out.writeInt((int) Math.min(chunkLetters, paddedLength - start));
+                    out.writeInt(chunks.getChecksum(c));
+                }
+                Files.copy(data, out);
+            }
+        } finally {
+            Files.deleteIfExists(data);
+        }
+    }
+
+    // cleans the raw text down to lowercase letters, pads it with "xyz" until
+    // length % 9 == 0, and encrypts it block by block into 'chunks'.
+    // gives back the number of real plaintext letters.
+    private static long encryptInto(Reader raw, CipherKey key, ChunkWriter chunks) throws IOException {
+        char[] input = new char[BUFFER_BLOCKS * 9];
+        byte[] clean = new byte[BUFFER_BLOCKS * 9];
+        byte[] cipher = new byte[BUFFER_BLOCKS * 9];
+        int pending = 0; // clean letters waiting in 'clean'
+        long plainLength = 0;
+
+        int n;
+        while ((n = raw.read(input, 0, input.length)) > 0) {
+            for (int i = 0; i < n; i++) {
+                int code = LetterNormalizer.letterCode(input[i]);
+                if (code < 0) {
+                    continue;
+                }
+                clean[pending++] = (byte) ('a' + code);
+                plainLength++;
+                if (pending == clean.length) {
+                    encryptBlocks(clean, pending, key, cipher, chunks);
+                    pending = 0;
+                }
+            }
+        }
+
+        // the last partial block gets the padding
+        int padding = 0;
+        while (pending % 9 != 0) {
+            clean[pending++] = MainCipher.paddingLetter(padding++);
+        }
+        encryptBlocks(clean, pending, key, cipher, chunks);
+        return plainLength;
+    }
+
+    private static void encryptBlocks(byte[] clean, int length, CipherKey key, byte[] cipher, ChunkWriter chunks) throws IOException {
+        for (int i = 0; i < length; i += 9) {
+            key.encryptBlock(clean, i, cipher, i);
+        }
+        chunks.write(cipher, 0, length);
+    }
+
+    // writes ciphertext to the temp file and keeps a CRC for every chunk.
+    // a chunk can be much bigger than one buffer, so the CRC is updated as the
+    // bytes go by and finished when the chunk is full (or at close()).
+    private static final class ChunkWriter implements Closeable {
+        private final OutputStream out;
+        private final int chunkLetters;
+        private final CRC32 crc = new CRC32();
+        private int[] checksums = new int[16];
+        private int chunkCount;
+        private int inChunk; // letters in the chunk we're still filling
+        private long length;
+
+        ChunkWriter(Path file, int chunkLetters) throws IOException {
+            this.out = new BufferedOutputStream(Files.newOutputStream(file));
+            this.chunkLetters = chunkLetters;
+        }
+
+        void write(byte[] cipher, int off, int len) throws IOException {
+            this.out.write(cipher, off, len);
+            this.length += len;
+            while (len > 0) {
+                int n = Math.min(len, this.chunkLetters - this.inChunk);
+                this.crc.update(cipher, off, n);
+                this.inChunk += n;
+                off += n;
+                len -= n;
+                if (this.inChunk == this.chunkLetters) {
+                    finishChunk();
+                }
+            }
+        }
+
+        private void finishChunk() throws IOException {
+            if (this.chunkCount == MAX_CHUNKS) {
+                throw new IOException("Too many chunks for one container, use bigger chunks.");
+            }
+            if (this.chunkCount == this.checksums.length) {
+                this.checksums = Arrays.copyOf(this.checksums, Math.min(MAX_CHUNKS, this.chunkCount * 2));
+            }
+            this.checksums[this.chunkCount++] = (int) this.crc.getValue();
+            this.crc.reset();
+            this.inChunk = 0;
+        }
+
+        long getLength() { return this.length; }
+        int getChunkCount() { return this.chunkCount; }
+        int getChecksum(int c) { return this.checksums[c]; }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (this.inChunk > 0) {
+                    finishChunk(); // the last, shorter chunk
+                }
+            } finally {
+                this.out.close();
+            }
+        }
+    }
+
+    // =========================================================================
+    // === Random-access reading
+    // =========================================================================
+
+    // decrypts plaintext letters [from, to). we seek straight to the chunks that
+    // hold those blocks, check their checksums, and only decrypt the blocks we need.
+    public String decryptRange(long from, long to) throws IOException {
+        from = Math.max(0, from);
+        to = Math.min(to, this.plainLength); // never hand back padding letters
+        if (from >= to) {
+            return "";
+        }
+        if (to - from > MAX_RANGE_LETTERS) {
+            throw new IllegalArgumentException("Can't decrypt more than " + MAX_RANGE_LETTERS + " letters at once, ask for smaller ranges.");
+        }
+
+        long firstBlock = from / 9;
+        long lastBlock = (to - 1) / 9;
+        int firstChunk = (int) (firstBlock / this.chunkBlocks);
+        int lastChunk = (int) (lastBlock / this.chunkBlocks);
+
+        StringBuilder plain = new StringBuilder((int) (to - from));
+        byte[] block = new byte[9];
+        for (int c = firstChunk; c <= lastChunk; c++) {
+            byte[] chunk = readChunk(c);
+            long chunkFirstLetter = (long) c * this.chunkBlocks * 9;
+
+            // only the blocks in this chunk that overlap [from, to)
+            long startBlock = Math.max(firstBlock, chunkFirstLetter / 9);
+            long endBlock = Math.min(lastBlock, (chunkFirstLetter + chunk.length) / 9 - 1);
+            for (long b = startBlock; b <= endBlock; b++) {
+                int blockOffset = (int) (b * 9 - chunkFirstLetter);
+                this.key.decryptBlock(chunk, blockOffset, block, 0);
+                long blockFirstLetter = b * 9;
+                int k0 = (int) Math.max(0, from - blockFirstLetter);
+                int k1 = (int) Math.min(9, to - blockFirstLetter);
+                for (int k = k0; k < k1; k++) {
+                    plain.append((char) block[k]);
+                }
+            }
+        }
+        return plain.toString();
+    }
+
+    // decrypts the whole thing (the padding is cut off exactly using plainLength).
+    // only for containers that fit in one String, see decryptTo for the big ones.
+    public String decryptAll() throws IOException {
+        return decryptRange(0, this.plainLength);
+    }
+
+    // decrypts the whole thing into 'out', one chunk at a time
+    public void decryptTo(OutputStream out) throws IOException {
+        long chunkLetters = (long) this.chunkBlocks * 9;
+        for (long from = 0; from < this.plainLength; from += chunkLetters) {
+            out.write(decryptRange(from, from + chunkLetters).getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    // reads one chunk of ciphertext and makes sure the checksum still matches
+    private byte[] readChunk(int c) throws IOException {
+        ByteBuffer buffer = readFully(this.dataStart + this.chunkOffsets[c], this.chunkLengths[c]);
+        byte[] chunk = new byte[this.chunkLengths[c]];
+        buffer.get(chunk);
+
+        CRC32 crc = new CRC32();
+        crc.update(chunk, 0, chunk.length);
+        if ((int) crc.getValue() != this.chunkChecksums[c]) {
+            throw new IOException("Checksum mismatch in chunk " + c + ", the container is damaged.");
+        }
+        return chunk;
+    }
+
+    // positional read that keeps going until we got all the bytes
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int n = this.channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of container file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Small command line front end:
+     *   java cryptographyproject.CipherContainer pack plain.txt cipher.hc9 [key]
+     *   java cryptographyproject.CipherContainer unpack cipher.hc9 decrypted_plain.txt [key]
+     *   java cryptographyproject.CipherContainer range cipher.hc9 1000 1200 [key]
+     * (key = a 26-letter substitution table, the built-in one if it's left out)
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: pack <plain> <container> [key] | unpack <container> <out> [key] | range <container> <from> <to> [key]");
+            return;
+        }
+        int keyArg = args[0].equals("range") ? 4 : 3;
+        try {
+            CipherKey key = (args.length > keyArg) ? CipherKey.of(args[keyArg]) : CipherKey.DEFAULT;
+            switch (args[0]) {
+                case "pack":
+                    // ISO-8859-1 turns every byte into exactly one char, so only
+                    // ASCII letters count, whatever the platform charset is
+                    try (Reader plain = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.ISO_8859_1)) {
+                        write(Paths.get(args[2]), plain, DEFAULT_CHUNK_BLOCKS, key);
+                    }
+                    System.out.println("Container written to " + args[2]);
+                    break;
+                case "unpack":
+                    try (CipherContainer container = new CipherContainer(Paths.get(args[1]), key);
+                         OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[2])))) {
+                        container.decryptTo(out);
+                    }
+                    System.out.println("Decrypted text written to " + args[2]);
+                    break;
+                case "range":
+                    try (CipherContainer container = new CipherContainer(Paths.get(args[1]), key)) {
+                        System.out.println(container.decryptRange(Long.parseLong(args[2]), Long.parseLong(args[3])));
+                    }
+                    break;
+                default:
+                    System.out.println("Unknown mode: " + args[0]);
+            }
+        } catch (IOException e) {
+            System.out.println("Oh no, container error: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println("!! ERROR: " + e.getMessage());
+        }
+    }
+}
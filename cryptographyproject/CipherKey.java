@@ -0,0 +1,252 @@
+package cryptographyproject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// this is one substitution key for the cipher, "compiled" into lookup tables.
+// the original cipher had the key baked in as a String and found letters with
+// indexOf() every time. now a key is turned into tables once:
+//
+//   forward[p]          plain letter p    -> cipher letter (the S6 part)
+//   inverse[c]          cipher letter c   -> plain letter
+//   encryptShift[s][p]  the Caesar (C3) part, row s = the plain letter at S6[0]
+//   decryptShift[k][c]  the Caesar part backwards, row k = the CIPHER letter at
+//                       S6[0], so the inverse substitution is already folded in
+//
+// (indexes are letter codes 0..25, the tables hold ASCII letters so they can
+// go straight into the output buffer.)
+//
+// compiled keys are kept in a small LRU cache, so asking for the same key again
+// (like one key per customer, many requests each) costs a map lookup, not a
+// rebuild. once you have a CipherKey, encrypting with it is exactly as fast as
+// with the built-in one, and it never changes, so any number of threads can use it.
+public final class CipherKey {
+
+    // the key the project has always used
+    public static final String DEFAULT_TABLE = "hilwmkbdpcvazusjgrnqyxfote";
+
+    // how many compiled keys we remember
+    public static final int CACHE_SIZE = 256;
+
+    private static final Map<String, CipherKey> cache = new LinkedHashMap<String, CipherKey>(CACHE_SIZE * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CipherKey> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private static long cacheHits;
+    private static long cacheMisses;
+
+    public static final CipherKey DEFAULT = of(DEFAULT_TABLE);
+
+    private final String table;
+    private final byte[] forward = new byte[26];
+    private final byte[] inverse = new byte[26];
+    private final byte[] encryptShift = new byte[26 * 26];
+    private final byte[] decryptShift = new byte[26 * 26];
+
+    // builds all the tables. private, go through of() so the cache gets used.
+    private CipherKey(String table) {
+        this.table = table;
+        for (int p = 0; p < 26; p++) {
+            int c = table.charAt(p) - 'a';
+            this.forward[p] = (byte) ('a' + c);
+            this.inverse[c] = (byte) ('a' + p);
+        }
+        for (int s = 0; s < 26; s++) {
+            for (int p = 0; p < 26; p++) {
+                this.encryptShift[s * 26 + p] = (byte) ('a' + (p + s) % 26);
+            }
+        }
+        for (int k = 0; k < 26; k++) {
+            int shift = this.inverse[k] - 'a'; // the plain letter at S6[0] is the shift
+            for (int c = 0; c < 26; c++) {
+                this.decryptShift[k * 26 + c] = (byte) ('a' + (c - shift + 26) % 26);
+            }
+        }
+    }
+
+    /**
+     * The compiled key for a substitution table (26 letters, each a-z once,
+     * position = plain letter, character = cipher letter). Compiled keys are
+     * cached, so this is cheap to call for every request.
+     */
+    public static CipherKey of(String table) {
+        String normalized = validate(table);
+        synchronized (cache) {
+            CipherKey key = cache.get(normalized);
+            if (key != null) {
+                cacheHits++;
+                return key;
+            }
+            cacheMisses++;
+        }
+        // build it outside the lock, two threads building the same key at once is harmless
+        CipherKey key = new CipherKey(normalized);
+        synchronized (cache) {
+            CipherKey raced = cache.putIfAbsent(normalized, key);
+            return (raced != null) ? raced : key;
+        }
+    }
+
+    // a random key, for testing and benchmarks
+    public static CipherKey random(Random random) {
+        List<Character> letters = new ArrayList<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            letters.add(c);
+        }
+        Collections.shuffle(letters, random);
+        StringBuilder table = new StringBuilder(26);
+        for (char c : letters) {
+            table.append(c);
+        }
+        return of(table.toString());
+    }
+
+    // makes sure the table is a real key (a permutation of a-z), lowercased
+    private static String validate(String table) {
+        if (table == null || table.length() != 26) {
+            throw new IllegalArgumentException("A key needs exactly 26 letters.");
+        }
+        String lower = table.toLowerCase();
+        boolean[] used = new boolean[26];
+        for (int i = 0; i < 26; i++) {
+            int c = lower.charAt(i) - 'a';
+            if (c < 0 || c >= 26) {
+                throw new IllegalArgumentException("A key can only have the letters a-z, found '" + lower.charAt(i) + "'.");
+            }
+            if (used[c]) {
+                throw new IllegalArgumentException("The letter '" + lower.charAt(i) + "' is in the key twice.");
+            }
+            used[c] = true;
+        }
+        return lower;
+    }
+
+    // "hits/misses/size" of the compiled-key cache
+    public static String cacheStats() {
+        synchronized (cache) {
+            return String.format("key cache: %d hits, %d misses, %d of %d keys cached",
+                cacheHits, cacheMisses, cache.size(), CACHE_SIZE);
+        }
+    }
+
+    // === Single letters (for goEncrypt/goDecrypt and their step-by-step printing) ===
+
+    public String getTable() { return this.table; }
+
+    // plain letter -> cipher letter (S6)
+    public char substitute(char plain) { return (char) this.forward[plain - 'a']; }
+
+    // cipher letter -> plain letter (S6 backwards)
+    public char unsubstitute(char cipher) { return (char) this.inverse[cipher - 'a']; }
+
+    // === Whole blocks (lowercase ASCII letters in byte arrays) ===
+
+    // encrypts the 9 letters at in[inOff..] into out[outOff..]. in and out can be the same.
+    public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        // the Caesar shift is the first plaintext letter of the S6 part
+        int row = (in[inOff + 3] - 'a') * 26;
+        for (int j = 0; j < 3; j++) {
+            out[outOff + j] = this.encryptShift[row + in[inOff + j] - 'a'];
+        }
+        for (int j = 3; j < 9; j++) {
+            out[outOff + j] = this.forward[in[inOff + j] - 'a'];
+        }
+    }
+
+    // decrypts a block of 'len' letters (1..9) the same way goDecrypt does:
+    // blocks with 3 or fewer letters are copied through untouched, and a short
+    // S6 part still gives us the shift from its first letter.
+    public void decryptPartialBlock(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (len <= 3) {
+            System.arraycopy(in, inOff, out, outOff, len);
+            return;
+        }
+        // pick the row before anything is written, so in and out can be the same array
+        int row = (in[inOff + 3] - 'a') * 26;
+        for (int j = 0; j < 3; j++) {
+            out[outOff + j] = this.decryptShift[row + in[inOff + j] - 'a'];
+        }
+        for (int j = 3; j < len; j++) {
+            out[outOff + j] = this.inverse[in[inOff + j] - 'a'];
+        }
+    }
+
+    public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        decryptPartialBlock(in, inOff, 9, out, outOff);
+    }
+
+    @Override
+    public String toString() {
+        return this.table;
+    }
+
+    /**
+     * Usage: java cryptographyproject.CipherKey [keys] [MB per thread] [threads]
+     * Encrypts the same text with the built-in key and with lots of different
+     * keys on several threads at once, to show the per-letter cost is the same.
+     */
+    public static void main(String[] args) {
+        int keyCount = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        int megabytes = (args.length > 1) ? Integer.parseInt(args[1]) : 16;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Random random = new Random(462);
+        String[] tables = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            tables[i] = random(random).getTable();
+        }
+
+        // one 9 KB "request" of plaintext letters, encrypted over and over
+        byte[] plain = new byte[9 * 1024];
+        for (int i = 0; i < plain.length; i++) {
+            plain[i] = (byte) ('a' + random.nextInt(26));
+        }
+        int requests = megabytes * 1024 * 1024 / plain.length;
+
+        for (int round = 0; round < 2; round++) { // round 0 is just the warm-up
+            double single = run(threads, requests, plain, tables, false);
+            double many = run(threads, requests, plain, tables, true);
+            if (round == 1) {
+                System.out.printf("%d threads, %d requests of %d letters each%n", threads, requests, plain.length);
+                System.out.printf("  built-in key only     : %8.1f MB/s%n", single);
+                System.out.printf("  %5d different keys  : %8.1f MB/s (key looked up for every request)%n", keyCount, many);
+                System.out.println("  " + cacheStats());
+            }
+        }
+    }
+
+    // every thread encrypts 'requests' requests; gives back the total MB/s
+    private static double run(int threads, int requests, byte[] plain, String[] tables, boolean manyKeys) {
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int threadNumber = t;
+            Thread worker = new Thread(() -> {
+                byte[] out = new byte[plain.length];
+                for (int r = 0; r < requests; r++) {
+                    CipherKey key = manyKeys ? of(tables[(r * 31 + threadNumber) % tables.length]) : DEFAULT;
+                    for (int i = 0; i < plain.length; i += 9) {
+                        key.encryptBlock(plain, i, out, i);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return (double) threads * requests * plain.length / 1048576.0 / seconds;
+    }
+}
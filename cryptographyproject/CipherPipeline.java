@@ -0,0 +1,412 @@
+package cryptographyproject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// this is the pipelined version of MainCipher for big files.
+// MainCipher reads everything, then encrypts everything, then writes everything,
+// so the disk sits around while the CPU works and the other way round.
+// here the three jobs run at the same time:
+//
+//   reader thread --(work queue)--> worker threads --(done queue)--> writer thread
+//
+// the reader takes empty buffers from a fixed pool, fills them with clean
+// letters (a whole number of 9-letter blocks), and hands them to the workers.
+// the writer puts the chunks back in order, writes them, and gives the buffers
+// back to the pool. because the pool and both queues are bounded, a slow stage
+// makes the others wait (backpressure) and memory never grows past the pool.
+public class CipherPipeline {
+
+    // one chunk of letters travelling through the pipeline
+    private static final class Chunk {
+        byte[] data;      // buffer from the pool
+        int length;       // how many letters are in use
+        long sequence;    // position in the file, so the writer can keep order
+        boolean last;     // true for the final chunk (that's where padding happens)
+    }
+
+    // a "stop" marker we push to the workers when the reader is finished
+    private static final Chunk POISON = new Chunk();
+
+    // queue depth numbers for one stage, sampled every time something is put in
+    public static final class QueueMetrics {
+        private final String name;
+        private long samples;
+        private long depthTotal;
+        private int maxDepth;
+        private long waitNanos; // how long the consumer sat waiting on an empty queue
+
+        QueueMetrics(String name) { this.name = name; }
+
+        synchronized void sample(int depth) {
+            samples++;
+            depthTotal += depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        synchronized void addWait(long nanos) { waitNanos += nanos; }
+
+        public synchronized String getName() { return name; }
+        public synchronized int getMaxDepth() { return maxDepth; }
+        public synchronized double getAverageDepth() { return samples == 0 ? 0.0 : (double) depthTotal / samples; }
+        public synchronized long getWaitMillis() { return waitNanos / 1_000_000; }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%-12s avg depth %6.2f | max depth %3d | consumer waited %6d ms",
+                name, getAverageDepth(), maxDepth, getWaitMillis());
+        }
+    }
+
+    // the most workers the command line lets you ask for
+    public static final int MAX_CLI_WORKERS = 256;
+
+    private final boolean encrypt;
+    private final CipherKey key;
+    private final int workerCount;
+    private final int chunkLetters;
+    private final int bufferCount;
+
+    private final QueueMetrics poolMetrics = new QueueMetrics("free buffers");
+    private final QueueMetrics workMetrics = new QueueMetrics("work queue");
+    private final QueueMetrics doneMetrics = new QueueMetrics("done queue");
+    private long lettersIn;
+    private long lettersOut;
+
+    // encrypt = true for encryption, false for decryption.
+    // chunkBlocks is how many 9-letter blocks go into one buffer.
+    // bufferCount is the whole memory budget: that many chunks can exist at once.
+    public CipherPipeline(boolean encrypt, int workerCount, int chunkBlocks, int bufferCount) {
+        this(encrypt, workerCount, chunkBlocks, bufferCount, CipherKey.DEFAULT);
+    }
+
+    // same, with any key instead of the built-in one
+    public CipherPipeline(boolean encrypt, int workerCount, int chunkBlocks, int bufferCount, CipherKey key) {
+        if (workerCount < 1 || chunkBlocks < 1 || bufferCount < 2) {
+            throw new IllegalArgumentException("need at least 1 worker, 1 block per chunk and 2 buffers");
+        }
+        this.encrypt = encrypt;
+        this.key = key;
+        this.workerCount = workerCount;
+        this.chunkLetters = chunkBlocks * 9;
+        this.bufferCount = bufferCount;
+    }
+
+    // reasonable defaults: one worker per core (minus the reader and writer), 64k blocks per chunk
+    public CipherPipeline(boolean encrypt) {
+        this(encrypt, Math.max(1, Runtime.getRuntime().availableProcessors() - 2), 65536,
+             Math.max(1, Runtime.getRuntime().availableProcessors() - 2) * 2 + 2);
+    }
+
+    // --- Getters for the stats ---
+    public QueueMetrics getPoolMetrics() { return this.poolMetrics; }
+    public QueueMetrics getWorkQueueMetrics() { return this.workMetrics; }
+    public QueueMetrics getDoneQueueMetrics() { return this.doneMetrics; }
+    public long getLettersIn() { return this.lettersIn; }
+    public long getLettersOut() { return this.lettersOut; }
+
+    /**
+     * Runs the whole pipeline: reads raw text from 'in', writes the result to 'out'.
+     * Gives exactly the same letters as goEncrypt / goDecrypt would.
+     */
+    public void run(InputStream in, OutputStream out) throws IOException {
+        // the buffer pool. +9 so the last chunk has room for the "xyz" padding.
+        BlockingQueue<byte[]> pool = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            pool.add(new byte[chunkLetters + 9]);
+        }
+        BlockingQueue<Chunk> workQueue = new ArrayBlockingQueue<>(bufferCount + workerCount);
+        BlockingQueue<Chunk> doneQueue = new ArrayBlockingQueue<>(bufferCount);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                readStage(in, pool, workQueue);
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                // always let the workers know we're done, even after an error
+                for (int i = 0; i < workerCount; i++) {
+                    putQuietly(workQueue, POISON);
+                }
+            }
+        }, "cipher-reader");
+
+        Thread[] workers = new Thread[workerCount];
+        for (int w = 0; w < workerCount; w++) {
+            workers[w] = new Thread(() -> {
+                try {
+                    workStage(workQueue, doneQueue);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "cipher-worker-" + w);
+        }
+
+        reader.start();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+
+        // the writer runs right here on the calling thread
+        try {
+            writeStage(out, pool, doneQueue, failure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        }
+
+        // if something broke, stop the other threads so nobody hangs
+        if (failure.get() != null) {
+            reader.interrupt();
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        }
+        joinQuietly(reader);
+        for (Thread worker : workers) {
+            joinQuietly(worker);
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t != null) {
+            throw new IOException("Pipeline failed: " + t, t);
+        }
+    }
+
+    // === Stage 1: read raw bytes, keep only the letters, cut into chunks ===
+    private void readStage(InputStream in, BlockingQueue<byte[]> pool, BlockingQueue<Chunk> workQueue)
+            throws IOException, InterruptedException {
+        byte[] raw = new byte[64 * 1024];
+        long sequence = 0;
+        Chunk pending = null; // we hold one chunk back so we know which one is the last
+        Chunk filling = newChunk(pool, sequence++);
+
+        int n;
+        while ((n = in.read(raw)) > 0) {
+            for (int i = 0; i < n; i++) {
+                byte letter = LetterNormalizer.asciiLetter(raw[i]);
+                if (letter == 0) {
+                    continue; // not a letter, skip it (same as replaceAll("[^a-z]", ""))
+                }
+                filling.data[filling.length++] = letter;
+                if (filling.length == chunkLetters) {
+                    if (pending != null) {
+                        submit(workQueue, pending);
+                    }
+                    pending = filling;
+                    filling = newChunk(pool, sequence++);
+                }
+            }
+        }
+
+        // end of input: the last chunk with letters in it gets the 'last' flag
+        if (filling.length > 0 || pending == null) {
+            if (pending != null) {
+                submit(workQueue, pending);
+            }
+            filling.last = true;
+            submit(workQueue, filling);
+        } else {
+            pending.last = true;
+            submit(workQueue, pending);
+            pool.put(filling.data); // never used, give it back
+        }
+    }
+
+    private Chunk newChunk(BlockingQueue<byte[]> pool, long sequence) throws InterruptedException {
+        poolMetrics.sample(pool.size());
+        Chunk chunk = new Chunk();
+        chunk.data = pool.take(); // blocks here when every buffer is busy (backpressure)
+        chunk.sequence = sequence;
+        return chunk;
+    }
+
+    private void submit(BlockingQueue<Chunk> workQueue, Chunk chunk) throws InterruptedException {
+        lettersIn += chunk.length; // only the reader thread touches this
+        workQueue.put(chunk);
+        workMetrics.sample(workQueue.size());
+    }
+
+    // === Stage 2: run the block cipher over each chunk ===
+    private void workStage(BlockingQueue<Chunk> workQueue, BlockingQueue<Chunk> doneQueue) throws InterruptedException {
+        while (true) {
+            long waitStart = System.nanoTime();
+            Chunk chunk = workQueue.take();
+            workMetrics.addWait(System.nanoTime() - waitStart);
+            if (chunk == POISON) {
+                return;
+            }
+            if (encrypt) {
+                encryptChunk(chunk);
+            } else {
+                decryptChunk(chunk);
+            }
+            doneQueue.put(chunk);
+            doneMetrics.sample(doneQueue.size());
+        }
+    }
+
+    // encrypts in place; the last chunk gets padded with "xyz" first
+    private void encryptChunk(Chunk chunk) {
+        if (chunk.last) {
+            int plainLength = chunk.length;
+            while (chunk.length % 9 != 0) {
+                chunk.data[chunk.length] = MainCipher.paddingLetter(chunk.length - plainLength);
+                chunk.length++;
+            }
+        }
+        for (int i = 0; i < chunk.length; i += 9) {
+            key.encryptBlock(chunk.data, i, chunk.data, i);
+        }
+    }
+
+    // decrypts in place; only the last chunk can end with a partial block
+    private void decryptChunk(Chunk chunk) {
+        for (int i = 0; i < chunk.length; i += 9) {
+            key.decryptPartialBlock(chunk.data, i, Math.min(9, chunk.length - i), chunk.data, i);
+        }
+    }
+
+    // === Stage 3: write chunks back out in the right order ===
+    private void writeStage(OutputStream out, BlockingQueue<byte[]> pool, BlockingQueue<Chunk> doneQueue,
+                            AtomicReference<Throwable> failure) throws IOException, InterruptedException {
+        // chunks can finish out of order, so we park early ones here until it's their turn.
+        // this can never hold more than bufferCount chunks, since that's all there are.
+        Map<Long, Chunk> waiting = new HashMap<>();
+        long nextSequence = 0;
+
+        // for decryption we hold back the last 8 letters, because the padding
+        // ("x" up to "xyzxyzxy") might start in one chunk and end in the next.
+        byte[] tail = new byte[8 + chunkLetters + 9];
+        int tailLength = 0;
+
+        while (true) {
+            Chunk chunk = waiting.remove(nextSequence);
+            if (chunk == null) {
+                if (failure.get() != null) {
+                    return; // someone else broke, stop waiting
+                }
+                long waitStart = System.nanoTime();
+                Chunk done = doneQueue.poll(100, TimeUnit.MILLISECONDS);
+                doneMetrics.addWait(System.nanoTime() - waitStart);
+                if (done != null) {
+                    waiting.put(done.sequence, done);
+                }
+                continue;
+            }
+
+            if (encrypt) {
+                out.write(chunk.data, 0, chunk.length);
+                lettersOut += chunk.length;
+            } else {
+                // glue the held-back letters in front of this chunk
+                System.arraycopy(chunk.data, 0, tail, tailLength, chunk.length);
+                tailLength += chunk.length;
+                int keep = chunk.last ? MainCipher.stripPadding(tail, tailLength) : Math.max(0, tailLength - 8);
+                out.write(tail, 0, keep);
+                lettersOut += keep;
+                System.arraycopy(tail, keep, tail, 0, tailLength - keep);
+                tailLength -= keep;
+            }
+
+            boolean last = chunk.last;
+            pool.put(chunk.data); // buffer is free again
+            nextSequence++;
+            if (last) {
+                out.flush();
+                return;
+            }
+        }
+    }
+
+    private static void putQuietly(BlockingQueue<Chunk> queue, Chunk chunk) {
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // prints the queue depth numbers so we can see which stage is the bottleneck
+    public void printStats(long elapsedNanos) {
+        System.out.println("--- Pipeline stats ---");
+        System.out.printf("  letters in: %d | letters out: %d | workers: %d | buffers: %d x %d letters%n",
+            lettersIn, lettersOut, workerCount, bufferCount, chunkLetters);
+        double seconds = elapsedNanos / 1e9;
+        if (seconds > 0) {
+            System.out.printf("  elapsed: %.3f s | %.1f million letters/s%n", seconds, lettersIn / seconds / 1e6);
+        }
+        System.out.println("  " + poolMetrics);
+        System.out.println("  " + workMetrics);
+        System.out.println("  " + doneMetrics);
+    }
+
+    /**
+     * Command line front end:
+     *   java cryptographyproject.CipherPipeline encrypt plain.txt cipher.txt [workers] [key]
+     *   java cryptographyproject.CipherPipeline decrypt cipher.txt decrypted_plain.txt [workers] [key]
+     * (key = a 26-letter substitution table, the built-in one if it's left out)
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || !(args[0].equals("encrypt") || args[0].equals("decrypt"))) {
+            System.out.println("Usage: (encrypt|decrypt) <input file> <output file> [workers] [key]");
+            return;
+        }
+        boolean encrypt = args[0].equals("encrypt");
+        CipherKey key;
+        try {
+            key = (args.length > 4) ? CipherKey.of(args[4]) : CipherKey.DEFAULT;
+        } catch (IllegalArgumentException e) {
+            System.out.println("!! ERROR: " + e.getMessage());
+            return;
+        }
+        int workers;
+        try {
+            workers = (args.length > 3) ? Integer.parseInt(args[3]) : Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+        } catch (NumberFormatException e) {
+            workers = 0; // same as any other bad number, see below
+        }
+        // every worker brings two more 576 KB buffers into the pool, so keep it sane
+        if (workers < 1 || workers > MAX_CLI_WORKERS) {
+            System.out.println("!! workers has to be a number between 1 and " + MAX_CLI_WORKERS + ".");
+            System.out.println("Usage: (encrypt|decrypt) <input file> <output file> [workers] [key]");
+            return;
+        }
+        CipherPipeline pipeline = new CipherPipeline(encrypt, workers, 65536, workers * 2 + 2, key);
+
+        long start = System.nanoTime();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(args[1])));
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[2])))) {
+            pipeline.run(in, out);
+        } catch (IOException e) {
+            System.out.println("Oh no, pipeline error: " + e.getMessage());
+            return;
+        }
+        System.out.println((encrypt ? "Encryption" : "Decryption") + " is done! check the " + args[2] + " file.");
+        pipeline.printStats(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,347 @@
+package cryptographyproject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// this checks every fast cipher engine we have against the original
+// goEncrypt/goDecrypt, which is our "reference" (the slow, obviously-right one).
+//
+// === Step 1: random cases ===
+// lots of random inputs: every clean length mod 9 (so every amount of "xyz"
+// padding), random case and junk characters in between, plaintexts that end
+// in x / xy / xyz... on purpose (the padding strip in goDecrypt), random
+// ciphertexts that aren't a multiple of 9, and for the pipeline random chunk
+// sizes, worker counts and buffer counts so the chunk borders land everywhere.
+// half the cases use a random CipherKey instead of the built-in one.
+//
+// === Step 2: a big generated corpus ===
+// every engine runs once over a few MB of fake English, we check the answer
+// again and time it, so the report shows speed right next to correctness.
+//
+// if anything doesn't match we print the first bad case and exit with code 1.
+public class CipherVerifier {
+
+    // one engine: turns an input into an output, the same way the reference would
+    private interface Engine {
+        String run(String input, CipherKey key, Random random) throws IOException;
+    }
+
+    // what we found out about one engine
+    private static final class Tally {
+        final String name;
+        int cases;
+        int failures;
+        String firstFailure;
+        double megabytesPerSecond = -1;
+
+        Tally(String name) { this.name = name; }
+
+        void record(boolean ok, String description) {
+            this.cases++;
+            if (!ok) {
+                this.failures++;
+                if (this.firstFailure == null) {
+                    this.firstFailure = description;
+                }
+            }
+        }
+    }
+
+    private static final String[] PADDING_LOOKALIKES = { "x", "xy", "xyz", "xyzx", "xyzxy", "xyzxyz", "xyzxyzx", "xyzxyzxy", "xyzxyzxyz" };
+    private static final String JUNK = " ,.;:!?'\"-\n\t0123456789éÜß";
+
+    private final Random random;
+    private final Path tempDir;
+    private final Map<String, Tally> tallies = new LinkedHashMap<>();
+
+    private CipherVerifier(long seed) throws IOException {
+        this.random = new Random(seed);
+        this.tempDir = Files.createTempDirectory("cipher-verifier");
+    }
+
+    // === The engines ===
+
+    private static String referenceEncrypt(String raw, CipherKey key, Random random) {
+        return MainCipher.goEncrypt(raw, false, key);
+    }
+
+    private static String referenceDecrypt(String cipher, CipherKey key, Random random) {
+        return MainCipher.goDecrypt(cipher, false, key);
+    }
+
+    private static String blockEncrypt(String raw, CipherKey key, Random random) {
+        return MainCipher.fastEncrypt(raw, key);
+    }
+
+    private static String blockDecrypt(String cipher, CipherKey key, Random random) {
+        return MainCipher.fastDecrypt(cipher, key);
+    }
+
+    private static String pipelineEncrypt(String raw, CipherKey key, Random random) throws IOException {
+        return runPipeline(true, raw, key, random);
+    }
+
+    private static String pipelineDecrypt(String cipher, CipherKey key, Random random) throws IOException {
+        return runPipeline(false, cipher, key, random);
+    }
+
+    // random = null means "use the normal defaults" (for the big corpus)
+    private static String runPipeline(boolean encrypt, String input, CipherKey key, Random random) throws IOException {
+        CipherPipeline pipeline = (random == null)
+            ? new CipherPipeline(encrypt)
+            : new CipherPipeline(encrypt, 1 + random.nextInt(4), 1 + random.nextInt(5), 2 + random.nextInt(5), key);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length() + 16);
+        pipeline.run(new ByteArrayInputStream(input.getBytes(StandardCharsets.ISO_8859_1)), out);
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    // the container stores the ciphertext at the very end of the file, so the
+    // last N bytes have to be exactly what goEncrypt gives
+    private String containerEncrypt(String raw, CipherKey key, Random random) throws IOException {
+        Path file = this.tempDir.resolve("verify.hc9");
+        int chunkBlocks = (random == null) ? CipherContainer.DEFAULT_CHUNK_BLOCKS : 1 + random.nextInt(6);
+        CipherContainer.write(file, raw, chunkBlocks, key);
+        byte[] bytes = Files.readAllBytes(file);
+        int cipherLength = (int) ((cleanLength(raw) + 8) / 9 * 9);
+        return new String(bytes, bytes.length - cipherLength, cipherLength, StandardCharsets.ISO_8859_1);
+    }
+
+    // === Step 1: random cases ===
+
+    private void runRandomCases(int cases) throws IOException {
+        Tally blockEnc = tally("block fast path", "encrypt");
+        Tally blockDec = tally("block fast path", "decrypt");
+        Tally pipeEnc = tally("pipeline (random chunks)", "encrypt");
+        Tally pipeDec = tally("pipeline (random chunks)", "decrypt");
+        Tally containerEnc = tally("container", "encrypt");
+        Tally containerRange = tally("container", "range decrypt");
+
+        for (int c = 0; c < cases; c++) {
+            // every clean length mod 9 in turn, from empty up to a few hundred letters
+            int cleanLength = (c % 9) + 9 * this.random.nextInt(c % 5 == 0 ? 3 : 40);
+            String raw = randomRawText(cleanLength);
+            CipherKey key = (c % 2 == 1) ? CipherKey.random(this.random) : CipherKey.DEFAULT;
+            String expected = referenceEncrypt(raw, key, null);
+            String label = "case " + c + " (" + cleanLength + " letters, key " + key + "): " + shorten(raw);
+
+            check(blockEnc, expected, blockEncrypt(raw, key, this.random), label);
+            check(pipeEnc, expected, pipelineEncrypt(raw, key, this.random), label);
+            if (c % 4 == 0 || c % 4 == 1) { // the container goes through the disk, so only every other case
+                check(containerEnc, expected, containerEncrypt(raw, key, this.random), label);
+                checkContainerRanges(containerRange, raw, key, label);
+            }
+
+            // decrypt: mostly real ciphertexts, some random junk of any length (not a multiple of 9)
+            String cipher = (c % 4 < 2) ? expected : randomRawText(this.random.nextInt(60));
+            String plain = referenceDecrypt(cipher, key, null);
+            label = "case " + c + " ciphertext (key " + key + "): " + shorten(cipher);
+            check(blockDec, plain, blockDecrypt(cipher, key, this.random), label);
+            check(pipeDec, plain, pipelineDecrypt(cipher, key, this.random), label);
+        }
+    }
+
+    // random sub-ranges out of a container have to match the clean plaintext exactly
+    // (the container knows the real length, so it never strips a real 'x')
+    private void checkContainerRanges(Tally tally, String raw, CipherKey key, String label) throws IOException {
+        Path file = this.tempDir.resolve("verify.hc9");
+        String clean = raw.toLowerCase().replaceAll("[^a-z]", "");
+        try (CipherContainer container = new CipherContainer(file, key)) {
+            tally.record(container.decryptAll().equals(clean), label + " (decryptAll)");
+            for (int r = 0; r < 3; r++) {
+                int from = this.random.nextInt(clean.length() + 1);
+                int to = from + this.random.nextInt(clean.length() - from + 1);
+                tally.record(container.decryptRange(from, to).equals(clean.substring(from, to)),
+                    label + " (range " + from + ".." + to + ")");
+            }
+        }
+    }
+
+    // 'letters' a-z letters (random case), with junk characters sprinkled in.
+    // a third of the time the letters end in something that looks like padding.
+    private String randomRawText(int letters) {
+        char[] clean = new char[letters];
+        for (int i = 0; i < letters; i++) {
+            clean[i] = (char) ('a' + this.random.nextInt(26));
+        }
+        if (letters > 0 && this.random.nextInt(3) == 0) {
+            String tail = PADDING_LOOKALIKES[this.random.nextInt(PADDING_LOOKALIKES.length)];
+            int start = Math.max(0, letters - tail.length());
+            for (int i = start; i < letters; i++) {
+                clean[i] = tail.charAt(i - start);
+            }
+        }
+
+        StringBuilder raw = new StringBuilder(letters * 2);
+        for (char letter : clean) {
+            while (this.random.nextInt(5) == 0) {
+                raw.append(JUNK.charAt(this.random.nextInt(JUNK.length())));
+            }
+            raw.append(this.random.nextInt(4) == 0 ? Character.toUpperCase(letter) : letter);
+        }
+        if (this.random.nextBoolean()) {
+            raw.append('\n');
+        }
+        return raw.toString();
+    }
+
+    // === Step 2: the big corpus, correctness + speed ===
+
+    private void runCorpus(int megabytes) throws IOException {
+        if (megabytes <= 0) {
+            return;
+        }
+        String corpus = generateCorpus(megabytes * 1024 * 1024);
+        System.out.printf("Generated a %.1f MB corpus (%d letters).%n", corpus.length() / 1048576.0, cleanLength(corpus));
+
+        // the reference first: it's the answer everyone else has to match
+        long start = System.nanoTime();
+        String expectedCipher = referenceEncrypt(corpus, CipherKey.DEFAULT, null);
+        tally("reference (goEncrypt)", "encrypt").megabytesPerSecond = megabytesPerSecond(corpus, start);
+        start = System.nanoTime();
+        String expectedPlain = referenceDecrypt(expectedCipher, CipherKey.DEFAULT, null);
+        tally("reference (goDecrypt)", "decrypt").megabytesPerSecond = megabytesPerSecond(expectedCipher, start);
+
+        timeEngine(tally("block fast path", "encrypt"), corpus, expectedCipher, CipherVerifier::blockEncrypt);
+        timeEngine(tally("block fast path", "decrypt"), expectedCipher, expectedPlain, CipherVerifier::blockDecrypt);
+        timeEngine(tally("pipeline (random chunks)", "encrypt"), corpus, expectedCipher, (in, key, r) -> runPipeline(true, in, key, null));
+        timeEngine(tally("pipeline (random chunks)", "decrypt"), expectedCipher, expectedPlain, (in, key, r) -> runPipeline(false, in, key, null));
+        timeEngine(tally("container", "encrypt"), corpus, expectedCipher, this::containerEncrypt);
+    }
+
+    private void timeEngine(Tally tally, String input, String expected, Engine engine) throws IOException {
+        engine.run(input.substring(0, Math.min(input.length(), 1 << 20)), CipherKey.DEFAULT, null); // warm up on the first MB
+        long start = System.nanoTime();
+        String actual = engine.run(input, CipherKey.DEFAULT, null);
+        tally.megabytesPerSecond = megabytesPerSecond(input, start);
+        check(tally, expected, actual, "big corpus");
+    }
+
+    // fake English: dictionary words (or random "words" if there's no dictionary) with spaces and punctuation
+    private String generateCorpus(int characters) {
+        Set<String> dictionary = CryptoAnalyzer.loadDictionary("dictionary.txt");
+        List<String> words = (dictionary != null) ? new ArrayList<>(dictionary) : new ArrayList<>();
+        StringBuilder corpus = new StringBuilder(characters + 32);
+        while (corpus.length() < characters) {
+            if (!words.isEmpty()) {
+                corpus.append(words.get(this.random.nextInt(words.size())));
+            } else {
+                for (int i = 2 + this.random.nextInt(8); i > 0; i--) {
+                    corpus.append((char) ('a' + this.random.nextInt(26)));
+                }
+            }
+            int r = this.random.nextInt(20);
+            corpus.append(r == 0 ? ". " : r == 1 ? ",\n" : " ");
+        }
+        return corpus.toString();
+    }
+
+    // === Little helpers ===
+
+    private Tally tally(String engine, String mode) {
+        return this.tallies.computeIfAbsent(engine + "|" + mode, key -> new Tally(key));
+    }
+
+    private static void check(Tally tally, String expected, String actual, String label) {
+        boolean ok = expected.equals(actual);
+        String description = label;
+        if (!ok) {
+            int at = 0;
+            while (at < Math.min(expected.length(), actual.length()) && expected.charAt(at) == actual.charAt(at)) {
+                at++;
+            }
+            description = label + "\n      expected " + expected.length() + " letters, got " + actual.length()
+                + ", first difference at " + at;
+        }
+        tally.record(ok, description);
+    }
+
+    private static long cleanLength(String raw) {
+        long letters = 0;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                letters++;
+            }
+        }
+        return letters;
+    }
+
+    private static double megabytesPerSecond(String input, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return input.length() / 1048576.0 / Math.max(seconds, 1e-9);
+    }
+
+    private static String shorten(String text) {
+        String oneLine = text.replace("\n", "\\n").replace("\t", "\\t");
+        return (oneLine.length() <= 60) ? '"' + oneLine + '"' : '"' + oneLine.substring(0, 60) + "...\"";
+    }
+
+    private int printReport() {
+        int totalFailures = 0;
+        System.out.println("\n--- Cipher Engine Verification ---");
+        System.out.printf("%-26s %-14s %8s %9s %12s%n", "Engine", "Mode", "Cases", "Failures", "MB/s");
+        System.out.println("-------------------------------------------------------------------------");
+        for (Tally tally : this.tallies.values()) {
+            String[] nameAndMode = tally.name.split("\\|");
+            System.out.printf("%-26s %-14s %8d %9d %12s%n", nameAndMode[0], nameAndMode[1], tally.cases, tally.failures,
+                tally.megabytesPerSecond < 0 ? "-" : String.format("%.1f", tally.megabytesPerSecond));
+            totalFailures += tally.failures;
+        }
+        System.out.println("-------------------------------------------------------------------------");
+        for (Tally tally : this.tallies.values()) {
+            if (tally.firstFailure != null) {
+                System.out.println("!! " + tally.name.replace("|", " ") + " first failed on " + tally.firstFailure);
+            }
+        }
+        return totalFailures;
+    }
+
+    private void cleanUp() throws IOException {
+        Files.deleteIfExists(this.tempDir.resolve("verify.hc9"));
+        Files.deleteIfExists(this.tempDir);
+    }
+
+    /**
+     * Usage: java cryptographyproject.CipherVerifier [random cases] [corpus MB] [seed]
+     */
+    public static void main(String[] args) {
+        int cases = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int megabytes = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 462;
+
+        int failures;
+        try {
+            CipherVerifier verifier = new CipherVerifier(seed);
+            try {
+                long start = System.nanoTime();
+                verifier.runRandomCases(cases);
+                System.out.printf("Checked %d random cases in %.1f s (seed %d).%n", cases, (System.nanoTime() - start) / 1e9, seed);
+                verifier.runCorpus(megabytes);
+            } finally {
+                verifier.cleanUp();
+            }
+            failures = verifier.printReport();
+        } catch (IOException e) {
+            System.out.println("Oh no, the verifier hit an I/O error: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        if (failures > 0) {
+            System.out.println("!! " + failures + " mismatches against goEncrypt/goDecrypt.");
+            System.exit(1);
+        }
+        System.out.println("Every engine matches goEncrypt/goDecrypt.");
+    }
+}
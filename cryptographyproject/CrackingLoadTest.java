@@ -0,0 +1,114 @@
+package cryptographyproject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// this is a little load test for CrackingService.
+// it uploads one ciphertext, then fires a bunch of requests at it from several
+// threads at once and prints the p50 / p99 latency for each kind of request.
+public class CrackingLoadTest {
+
+    private static final String[] KINDS = {"frequencies", "partial", "solve"};
+
+    /**
+     * Usage: java cryptographyproject.CrackingLoadTest [cipher file] [requests] [threads] [port]
+     * every 20th request is a "solve", the rest are split between frequencies and partial.
+     */
+    public static void main(String[] args) throws Exception {
+        String cipherFile = (args.length > 0) ? args[0] : "cipher.txt";
+        int requests = (args.length > 1) ? Integer.parseInt(args[1]) : 500;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : 16;
+        int port = (args.length > 3) ? Integer.parseInt(args[3]) : CrackingService.DEFAULT_PORT;
+        String base = "http://127.0.0.1:" + port;
+
+        HttpClient client = HttpClient.newHttpClient();
+
+        // === Step 1: upload the ciphertext once ===
+        String cipherText = new String(Files.readAllBytes(Paths.get(cipherFile)));
+        HttpResponse<String> uploaded = client.send(
+            HttpRequest.newBuilder(URI.create(base + "/ciphertexts"))
+                .POST(HttpRequest.BodyPublishers.ofString(cipherText)).build(),
+            HttpResponse.BodyHandlers.ofString());
+        String id = uploaded.body().replaceAll(".*\"id\": \"([^\"]+)\".*", "$1");
+        System.out.println("Uploaded " + cipherFile + " as " + id + ": " + uploaded.body());
+
+        // === Step 2: hammer it from many threads ===
+        String halfKey = "lgjhzwqabpfce?????????????"; // a partly right key, like mid-way through cracking
+        List<List<Long>> latencies = new ArrayList<>();
+        for (int k = 0; k < KINDS.length; k++) {
+            latencies.add(new ArrayList<>());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int r = 0; r < requests; r++) {
+            int kind = (r % 20 == 19) ? 2 : r % 2;
+            String url;
+            HttpRequest.Builder request;
+            if (kind == 0) {
+                url = base + "/ciphertexts/" + id + "/frequencies?segment=s6";
+                request = HttpRequest.newBuilder(URI.create(url)).GET();
+            } else if (kind == 1) {
+                url = base + "/ciphertexts/" + id + "/partial?key=" + halfKey.replace("?", "%3F");
+                request = HttpRequest.newBuilder(URI.create(url)).GET();
+            } else {
+                url = base + "/ciphertexts/" + id + "/solve?restarts=5";
+                request = HttpRequest.newBuilder(URI.create(url)).POST(HttpRequest.BodyPublishers.noBody());
+            }
+            HttpRequest built = request.build();
+            results.add(pool.submit(() -> {
+                long t0 = System.nanoTime();
+                HttpResponse<String> response = client.send(built, HttpResponse.BodyHandlers.ofString());
+                long elapsed = System.nanoTime() - t0;
+                if (response.statusCode() >= 300) {
+                    throw new IOException("HTTP " + response.statusCode() + ": " + response.body());
+                }
+                return new long[] {kind, elapsed};
+            }));
+        }
+
+        int failures = 0;
+        for (Future<long[]> result : results) {
+            try {
+                long[] sample = result.get();
+                latencies.get((int) sample[0]).add(sample[1]);
+            } catch (Exception e) {
+                failures++;
+            }
+        }
+        long totalNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        // === Step 3: report ===
+        System.out.printf("%n%d requests, %d threads, %d failures, %.1f requests/s%n",
+            requests, threads, failures, requests / (totalNanos / 1e9));
+        System.out.printf("%-12s %7s %10s %10s %10s%n", "Endpoint", "Count", "p50 ms", "p99 ms", "max ms");
+        for (int k = 0; k < KINDS.length; k++) {
+            long[] sorted = latencies.get(k).stream().mapToLong(Long::longValue).toArray();
+            if (sorted.length == 0) {
+                continue;
+            }
+            Arrays.sort(sorted);
+            System.out.printf("%-12s %7d %10.2f %10.2f %10.2f%n", KINDS[k], sorted.length,
+                percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6);
+        }
+    }
+
+    // nearest-rank percentile of an already sorted array
+    private static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,364 @@
+package cryptographyproject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// this is a small local HTTP service around CryptoAnalyzer, so we don't have to
+// start AttackMain (and answer all its Scanner prompts) for every ciphertext.
+// the dictionary and the language model are loaded once when it starts.
+//
+// Endpoints (all answers are JSON):
+//   POST /ciphertexts                       body = ciphertext      -> {"id": "...", "letters": N}
+//   GET  /ciphertexts/{id}/frequencies?segment=all|c3|s6           -> letter counts
+//   GET  /ciphertexts/{id}/partial?key=<26 letters, '?' = unknown> -> partial + full decryption and score
+//   POST /ciphertexts/{id}/solve?restarts=N                        -> recovered key and scores
+//   DELETE /ciphertexts/{id}                                       -> {"deleted": "..."}
+//   GET  /health
+//
+// uploaded ciphertexts don't stay forever: one that hasn't been used for
+// IDLE_MILLIS is dropped, and if there are more than MAX_CIPHERTEXTS the least
+// recently used one goes. all of them share one dictionary trie (WordScorer).
+//
+// every request runs on its own virtual thread when the JVM has them (Java 21+),
+// otherwise on a cached thread pool. the heavy KeySolver work always goes to a
+// separate fixed pool of normal threads, one per core, so a burst of solve
+// requests can't starve the cheap ones.
+public class CrackingService {
+
+    public static final int DEFAULT_PORT = 8462;
+    public static final int MAX_SOLVER_THREADS = 256;
+    public static final int MAX_CIPHERTEXTS = 256;
+    public static final long IDLE_MILLIS = 30 * 60 * 1000L; // 30 minutes
+
+    private final Set<String> dictionary;
+    private final WordScorer wordScorer; // built once, every uploaded ciphertext shares it
+    private final KeySolver solver;
+    private final ExecutorService requestExecutor;
+    private final ExecutorService solverPool;
+    private final Map<String, Stored> ciphertexts = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private HttpServer server;
+
+    public CrackingService(Set<String> dictionary, LanguageModel model, int solverThreads) {
+        this.dictionary = dictionary;
+        this.wordScorer = new WordScorer(dictionary);
+        this.solver = new KeySolver(model);
+        this.requestExecutor = newRequestExecutor();
+        this.solverPool = Executors.newFixedThreadPool(solverThreads);
+    }
+
+    // one uploaded ciphertext and when it was last used
+    private static final class Stored {
+        final CryptoAnalyzer analyzer;
+        volatile long lastUsed;
+
+        Stored(CryptoAnalyzer analyzer) {
+            this.analyzer = analyzer;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    // virtual threads if this JVM has them, otherwise a normal cached pool.
+    // we look the method up by name so the code still compiles on Java 17.
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // starts listening on 127.0.0.1 only, this is meant to be a local service
+    public void start(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/ciphertexts", this::handleCiphertexts);
+        this.server.createContext("/health", exchange -> send(exchange, 200, "{\"status\": \"ok\"}"));
+        this.server.setExecutor(this.requestExecutor);
+        this.server.start();
+    }
+
+    public int getPort() { return this.server.getAddress().getPort(); }
+
+    public void stop() {
+        if (this.server != null) {
+            this.server.stop(0);
+        }
+        this.requestExecutor.shutdown();
+        this.solverPool.shutdown();
+    }
+
+    // =========================================================================
+    // === Request handling
+    // =========================================================================
+
+    private void handleCiphertexts(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().split("/"); // "", "ciphertexts", id, action
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            if (path.length == 2 && method.equals("POST")) {
+                upload(exchange);
+                return;
+            }
+            if (path.length == 3 && method.equals("DELETE")) {
+                if (this.ciphertexts.remove(path[2]) == null) {
+                    send(exchange, 404, error("no ciphertext with id " + path[2]));
+                } else {
+                    send(exchange, 200, "{\"deleted\": " + JsonText.quote(path[2]) + "}");
+                }
+                return;
+            }
+            if (path.length != 4) {
+                send(exchange, 404, error("unknown path"));
+                return;
+            }
+
+            CryptoAnalyzer analyzer = lookup(path[2]);
+            if (analyzer == null) {
+                send(exchange, 404, error("no ciphertext with id " + path[2]));
+                return;
+            }
+
+            switch (path[3]) {
+                case "frequencies":
+                    send(exchange, 200, frequencies(analyzer, query.getOrDefault("segment", "s6")));
+                    break;
+                case "partial":
+                    send(exchange, 200, partial(analyzer, query.getOrDefault("key", "")));
+                    break;
+                case "solve":
+                    int restarts = Integer.parseInt(query.getOrDefault("restarts", "10"));
+                    send(exchange, 200, solve(analyzer, restarts));
+                    break;
+                default:
+                    send(exchange, 404, error("unknown action " + path[3]));
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (ExecutionException e) {
+            send(exchange, 500, error("solver failed: " + e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, error("interrupted"));
+        } catch (RuntimeException e) {
+            // anything else is our bug, but the client still gets a JSON answer
+            send(exchange, 500, error("internal error: " + e));
+        }
+    }
+
+    // the analyzer for an id (and marks it as used), or null if it's gone
+    private CryptoAnalyzer lookup(String id) {
+        Stored stored = this.ciphertexts.get(id);
+        if (stored == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - stored.lastUsed > IDLE_MILLIS) {
+            this.ciphertexts.remove(id, stored); // expired, same as if it was never there
+            return null;
+        }
+        stored.lastUsed = now;
+        return stored.analyzer;
+    }
+
+    // drops the expired ciphertexts, then the least recently used ones while there are too many
+    private synchronized void evict() {
+        long now = System.currentTimeMillis();
+        this.ciphertexts.values().removeIf(stored -> now - stored.lastUsed > IDLE_MILLIS);
+        while (this.ciphertexts.size() > MAX_CIPHERTEXTS) {
+            String oldestId = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<String, Stored> entry : this.ciphertexts.entrySet()) {
+                if (entry.getValue().lastUsed < oldest) {
+                    oldest = entry.getValue().lastUsed;
+                    oldestId = entry.getKey();
+                }
+            }
+            if (oldestId == null) {
+                break;
+            }
+            this.ciphertexts.remove(oldestId);
+        }
+    }
+
+    // POST /ciphertexts
+    private void upload(HttpExchange exchange) throws IOException {
+        String text;
+        try (InputStream body = exchange.getRequestBody()) {
+            text = new String(body.readAllBytes(), StandardCharsets.ISO_8859_1);
+        }
+        CryptoAnalyzer analyzer = CryptoAnalyzer.fromCipherText(text, this.dictionary);
+        analyzer.shareWordScorer(this.wordScorer);
+        String id = "c" + this.nextId.getAndIncrement();
+        this.ciphertexts.put(id, new Stored(analyzer));
+        evict();
+        send(exchange, 201, "{\"id\": \"" + id + "\", \"letters\": " + analyzer.getCleanLength() + "}");
+    }
+
+    // GET .../frequencies
+    private String frequencies(CryptoAnalyzer analyzer, String segment) {
+        Map<Character, Integer> counts;
+        switch (segment) {
+            case "all": counts = analyzer.getSingleLetterFrequencies(); break;
+            case "c3":  counts = analyzer.getSegmentedFrequencies(9, 0, 3); break;
+            case "s6":  counts = analyzer.getSegmentedFrequencies(9, 3, 6); break;
+            default: throw new IllegalArgumentException("segment must be all, c3 or s6");
+        }
+        StringBuilder json = new StringBuilder("{\"segment\": \"" + segment + "\", \"counts\": {");
+        for (char c = 'a'; c <= 'z'; c++) {
+            json.append('"').append(c).append("\": ").append(counts.get(c));
+            json.append(c < 'z' ? ", " : "");
+        }
+        return json.append("}}").toString();
+    }
+
+    // GET .../partial?key=...
+    private String partial(CryptoAnalyzer shared, String key) {
+        byte[] guesses = parseKey(key);
+        // our own copy of the guess map, so parallel requests don't step on each other
+        CryptoAnalyzer analyzer = shared.copyWithFreshGuesses();
+        analyzer.applyKey(guesses);
+        String partialText = analyzer.getDecryptedTextWithContext();
+        String fullText = analyzer.getFullyDecryptedText();
+        return "{\"partial\": \"" + partialText + "\", \"full\": \"" + fullText
+            + "\", \"wordScore\": " + analyzer.scoreText(fullText) + "}";
+    }
+
+    // checks a ?key= value and turns it into plain letter codes per cipher letter (-1 = '?').
+    // anything that isn't a-z or '?', or a plain letter used twice, is a 400.
+    private static byte[] parseKey(String key) {
+        if (key.length() != 26) {
+            throw new IllegalArgumentException("key must be 26 letters (cipher a..z -> plain), '?' for unknown");
+        }
+        byte[] guesses = new byte[26];
+        boolean[] used = new boolean[26];
+        for (int i = 0; i < 26; i++) {
+            char plain = key.charAt(i);
+            if (plain == '?') {
+                guesses[i] = -1;
+                continue;
+            }
+            if (plain < 'a' || plain > 'z') {
+                throw new IllegalArgumentException("key can only have a-z and '?', found '" + plain + "' at position " + i);
+            }
+            if (used[plain - 'a']) {
+                throw new IllegalArgumentException("plain letter '" + plain + "' is in the key twice");
+            }
+            used[plain - 'a'] = true;
+            guesses[i] = (byte) (plain - 'a');
+        }
+        return guesses;
+    }
+
+    // POST .../solve
+    private String solve(CryptoAnalyzer shared, int restarts) throws InterruptedException, ExecutionException {
+        if (restarts < 1 || restarts > 1000) {
+            throw new IllegalArgumentException("restarts must be between 1 and 1000");
+        }
+        // the CPU-heavy part runs on the solver pool, the request thread just waits for it
+        Future<String> answer = this.solverPool.submit(() -> {
+            KeySolver.Result result = this.solver.solve(shared.countSegmentedGrams(9, 3, 6, 3), 0, restarts);
+            CryptoAnalyzer analyzer = shared.copyWithFreshGuesses();
+            analyzer.applyKey(result.getKey());
+            int wordScore = analyzer.scoreFullDecryption();
+            return "{\"key\": \"" + result.keyString() + "\", \"modelScore\": " + result.getScore()
+                + ", \"wordScore\": " + wordScore + "}";
+        });
+        return answer.get();
+    }
+
+    // =========================================================================
+    // === Little helpers
+    // =========================================================================
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                          URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String error(String message) {
+        return "{\"error\": " + JsonText.quote(message) + "}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Usage: java cryptographyproject.CrackingService [port] [solver threads]
+     */
+    public static void main(String[] args) {
+        int port;
+        int solverThreads;
+        try {
+            port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            solverThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        } catch (NumberFormatException e) {
+            System.out.println("!! port and solver threads have to be numbers.");
+            System.out.println("Usage: [port] [solver threads]");
+            return;
+        }
+        // port 0 means "any free port", the real one gets printed below
+        if (port < 0 || port > 65535) {
+            System.out.println("!! port has to be between 0 and 65535.");
+            System.out.println("Usage: [port] [solver threads]");
+            return;
+        }
+        if (solverThreads < 1 || solverThreads > MAX_SOLVER_THREADS) {
+            System.out.println("!! solver threads has to be between 1 and " + MAX_SOLVER_THREADS + ".");
+            System.out.println("Usage: [port] [solver threads]");
+            return;
+        }
+
+        Set<String> dictionary = CryptoAnalyzer.loadDictionary("dictionary.txt");
+        if (dictionary == null) {
+            System.out.println("!! dictionary.txt not found. We need it for scoring. Exiting.");
+            return;
+        }
+        CrackingService service = new CrackingService(dictionary, new LanguageModel(dictionary), solverThreads);
+        try {
+            service.start(port);
+        } catch (IOException e) {
+            System.out.println("Oh no, could not start the service on port " + port + ": " + e.getMessage());
+            service.stop();
+            return;
+        }
+        System.out.println("Cracking service listening on http://127.0.0.1:" + service.getPort()
+            + " (dictionary: " + dictionary.size() + " words, solver threads: " + solverThreads + ")");
+    }
+}
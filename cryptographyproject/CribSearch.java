@@ -0,0 +1,402 @@
+package cryptographyproject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// this is "crib dragging": we know (or guess) a word that's somewhere in the
+// plaintext, like a header or a name, and we slide it over every spot in the
+// ciphertext to see where it could fit.
+//
+// where a crib letter lands in an S6 position, it directly gives a mapping
+// (cipher letter -> plain letter). where it lands in a C3 position, it gives
+// the Caesar shift of that block, and since the shift IS the plain letter at
+// the block's S6[0], that's also a mapping: cipher[S6[0]] -> (c - p) mod 26.
+// a spot is only a match if all those mappings agree with each other and
+// with the guesses we already have.
+//
+// to make this fast on long ciphertexts we don't test every spot. S6 is one
+// fixed substitution, so repeated letters in the crib must line up with
+// repeated letters in the ciphertext ("letter pattern", like "ABCA" for
+// "that"). we index every window of the ciphertext once by (alignment in
+// the 9-letter block, pattern of its S6 letters), and then a crib only has
+// to look at the spots with the same pattern.
+//
+// an index is three flat arrays (sorted distinct keys, where each key's offsets
+// start, and all the offsets), about 4 bytes per letter of text plus 12 per
+// distinct pattern. we only keep the indexes of the last few window lengths used.
+public class CribSearch {
+
+    // windows longer than this don't fit in the index key (4 bits per letter)
+    public static final int MAX_WINDOW = 12;
+
+    // how many window lengths we keep an index for (least recently used goes first)
+    public static final int MAX_INDEXES = 4;
+
+    // how many letters we unpack at a time while building an index
+    private static final int CHUNK_LETTERS = 4096;
+
+    private static final int WILDCARD = 15; // a C3 position in a pattern
+
+    // one place where a crib fits
+    public static final class Match {
+        private final String crib;
+        private final int offset;
+        private final GuessState implied;
+        private final int newMappings;
+        private final Map<Integer, Character> shifts;
+
+        Match(String crib, int offset, GuessState implied, int newMappings, Map<Integer, Character> shifts) {
+            this.crib = crib;
+            this.offset = offset;
+            this.implied = implied;
+            this.newMappings = newMappings;
+            this.shifts = shifts;
+        }
+
+        public String getCrib() { return this.crib; }
+        public int getOffset() { return this.offset; }                   // position in the clean text
+        public int getAlignment() { return this.offset % 9; }             // where in the block the crib starts
+        public GuessState getImpliedState() { return this.implied; }      // our guesses + what the crib adds
+        public int getNewMappings() { return this.newMappings; }          // how many S6 letters the crib adds
+        public Map<Integer, Character> getShifts() { return this.shifts; } // block number -> Caesar shift letter
+    }
+
+    // the offsets of every window in the text, grouped by pattern key
+    private static final class PatternIndex {
+        final long[] keys;   // the distinct keys, sorted
+        final int[] starts;  // offsets of keys[b] are offsets[starts[b] .. starts[b + 1] - 1]
+        final int[] offsets;
+
+        PatternIndex(long[] keys, int[] starts, int[] offsets) {
+            this.keys = keys;
+            this.starts = starts;
+            this.offsets = offsets;
+        }
+    }
+
+    private final PackedLetters letters;
+    // window length -> its index, built the first time a crib needs it
+    private final Map<Integer, PatternIndex> indexes = new LinkedHashMap<Integer, PatternIndex>(MAX_INDEXES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, PatternIndex> eldest) {
+            return size() > MAX_INDEXES;
+        }
+    };
+
+    public CribSearch(PackedLetters letters) {
+        this.letters = letters;
+    }
+
+    // === Searching ===
+
+    // every spot where the crib fits with the guesses we have now
+    public List<Match> drag(String crib, GuessState current) {
+        byte[] cribCodes = toCodes(crib);
+        List<Match> matches = new ArrayList<>();
+        int length = cribCodes.length;
+        if (length == 0 || length > this.letters.length()) {
+            return matches;
+        }
+        String cleanCrib = codesToString(cribCodes);
+        int window = Math.min(length, MAX_WINDOW);
+        PatternIndex index = getIndex(window);
+
+        for (int alignment = 0; alignment < 9; alignment++) {
+            int bucket = Arrays.binarySearch(index.keys, patternKey(cribCodes, 0, window, alignment, new int[26]));
+            if (bucket < 0) {
+                continue; // no window of the text has this pattern, so the crib can't sit here
+            }
+            for (int i = index.starts[bucket]; i < index.starts[bucket + 1]; i++) {
+                int offset = index.offsets[i];
+                if (offset + length > this.letters.length()) {
+                    continue;
+                }
+                Match match = verify(cleanCrib, cribCodes, offset, current);
+                if (match != null) {
+                    matches.add(match);
+                }
+            }
+        }
+        matches.sort((a, b) -> Integer.compare(a.offset, b.offset));
+        return matches;
+    }
+
+    // lots of cribs at once, in parallel. they all share the same index.
+    public Map<String, List<Match>> dragAll(Collection<String> cribs, GuessState current) {
+        Map<String, List<Match>> results = new ConcurrentHashMap<>();
+        cribs.parallelStream().forEach(crib -> results.put(crib, drag(crib, current)));
+        Map<String, List<Match>> ordered = new LinkedHashMap<>();
+        for (String crib : cribs) {
+            ordered.put(crib, results.get(crib));
+        }
+        return ordered;
+    }
+
+    // works out all the mappings the crib needs at this offset and checks they don't clash
+    private Match verify(String crib, byte[] cribCodes, int offset, GuessState current) {
+        int textLength = this.letters.length();
+        byte[] cipherToPlain = new byte[26];
+        current.copyInto(cipherToPlain);
+        byte[] plainToCipher = new byte[26];
+        Arrays.fill(plainToCipher, (byte) -1);
+        for (int c = 0; c < 26; c++) {
+            if (cipherToPlain[c] >= 0) {
+                plainToCipher[cipherToPlain[c]] = (byte) c;
+            }
+        }
+
+        int added = 0;
+        for (int k = 0; k < cribCodes.length; k++) {
+            int position = offset + k;
+            int blockStart = position - position % 9;
+            int cipherCode = this.letters.codeAt(position);
+            int plainCode = cribCodes[k];
+
+            int mappedCipher;
+            int mappedPlain;
+            if (position % 9 >= 3) {
+                // S6 letter: straight substitution
+                mappedCipher = cipherCode;
+                mappedPlain = plainCode;
+            } else if (blockStart + 3 >= textLength) {
+                // a short last block with no S6 part gets copied through as-is (same as goDecrypt)
+                if (cipherCode != plainCode) {
+                    return null;
+                }
+                continue;
+            } else {
+                // C3 letter: the shift is (c - p), and the shift is the plain letter at this block's S6[0]
+                mappedCipher = this.letters.codeAt(blockStart + 3);
+                mappedPlain = Math.floorMod(cipherCode - plainCode, 26);
+            }
+
+            if (cipherToPlain[mappedCipher] == mappedPlain) {
+                continue; // we already knew this one
+            }
+            if (cipherToPlain[mappedCipher] >= 0 || plainToCipher[mappedPlain] >= 0) {
+                return null; // clashes with a guess (or with another letter of the crib)
+            }
+            cipherToPlain[mappedCipher] = (byte) mappedPlain;
+            plainToCipher[mappedPlain] = (byte) mappedCipher;
+            added++;
+        }
+
+        // the Caesar shift of every block the crib touches, where we know it now
+        Map<Integer, Character> shifts = new LinkedHashMap<>();
+        for (int blockStart = offset - offset % 9; blockStart < offset + cribCodes.length; blockStart += 9) {
+            if (blockStart + 3 < textLength) {
+                int shift = cipherToPlain[this.letters.codeAt(blockStart + 3)];
+                if (shift >= 0) {
+                    shifts.put(blockStart / 9, (char) ('a' + shift));
+                }
+            }
+        }
+        return new Match(crib, offset, GuessState.fromKey(cipherToPlain), added, shifts);
+    }
+
+    // === The pattern index ===
+
+    private PatternIndex getIndex(int window) {
+        synchronized (this.indexes) {
+            PatternIndex index = this.indexes.get(window);
+            if (index != null) {
+                return index;
+            }
+        }
+        // build it outside the lock, so cribs of other lengths don't wait for us.
+        // two threads building the same one at once is harmless, one of them wins.
+        PatternIndex index = buildIndex(window);
+        synchronized (this.indexes) {
+            PatternIndex raced = this.indexes.putIfAbsent(window, index);
+            return (raced != null) ? raced : index;
+        }
+    }
+
+    // two passes over the text. the first counts how many windows have each key
+    // (there are only so many patterns of 12 letters, so that table stays small
+    // however long the text is), the second drops every offset into its key's group.
+    private PatternIndex buildIndex(int window) {
+        int windowCount = Math.max(0, this.letters.length() - window + 1);
+        KeyCounts counts = new KeyCounts();
+        scanWindows(window, windowCount, counts, null, null);
+
+        // the distinct keys in sorted order, and where each one's offsets start
+        long[] keys = counts.sortedKeys();
+        int[] starts = new int[keys.length + 1];
+        for (int b = 0; b < keys.length; b++) {
+            int slot = counts.slotOf(keys[b]);
+            starts[b + 1] = starts[b] + counts.values[slot];
+            counts.values[slot] = b; // from now on the table gives the key's group number
+        }
+
+        // the offsets go in in order, so every key's offsets end up sorted too
+        int[] offsets = new int[windowCount];
+        int[] next = Arrays.copyOf(starts, keys.length);
+        scanWindows(window, windowCount, counts, offsets, next);
+        return new PatternIndex(keys, starts, offsets);
+    }
+
+    // works out the pattern key of every window, unpacking the text a chunk at a
+    // time (each chunk overlaps the next by window - 1 letters, so no window gets
+    // cut). without 'offsets' it counts the keys, with it it fills in the groups.
+    private void scanWindows(int window, int windowCount, KeyCounts counts, int[] offsets, int[] next) {
+        byte[] chunk = new byte[CHUNK_LETTERS + window - 1];
+        int[] firstSeen = new int[26]; // reused for every window
+        for (int chunkStart = 0; chunkStart < windowCount; chunkStart += CHUNK_LETTERS) {
+            int chunkWindows = Math.min(CHUNK_LETTERS, windowCount - chunkStart);
+            this.letters.copyCodes(chunkStart, chunkWindows + window - 1, chunk, 0);
+            for (int k = 0; k < chunkWindows; k++) {
+                int offset = chunkStart + k;
+                long key = patternKey(chunk, k, window, offset % 9, firstSeen);
+                if (offsets == null) {
+                    int slot = counts.add(key); // (first, add() may swap in bigger arrays)
+                    counts.values[slot]++;
+                } else {
+                    offsets[next[counts.values[counts.slotOf(key)]]++] = offset;
+                }
+            }
+        }
+    }
+
+    // a small open-addressing hash table of pattern key -> int (linear probing,
+    // grows at half full), only used while an index is being built
+    private static final class KeyCounts {
+        private static final long EMPTY = -1; // pattern keys are never negative
+        long[] keys = new long[1024];
+        int[] values = new int[1024];
+        int size;
+
+        KeyCounts() {
+            Arrays.fill(this.keys, EMPTY);
+        }
+
+        // the slot of 'key', or the empty slot where it would go
+        int slotOf(long key) {
+            int mask = this.keys.length - 1;
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+            while (this.keys[slot] != EMPTY && this.keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        // the slot of 'key', putting it in first if it's new
+        int add(long key) {
+            int slot = slotOf(key);
+            if (this.keys[slot] == EMPTY) {
+                if ((this.size + 1) * 2 > this.keys.length) {
+                    grow();
+                    slot = slotOf(key);
+                }
+                this.keys[slot] = key;
+                this.size++;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = this.keys;
+            int[] oldValues = this.values;
+            this.keys = new long[oldKeys.length * 2];
+            this.values = new int[oldKeys.length * 2];
+            Arrays.fill(this.keys, EMPTY);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slotOf(oldKeys[i]);
+                    this.keys[slot] = oldKeys[i];
+                    this.values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        long[] sortedKeys() {
+            long[] sorted = new long[this.size];
+            int n = 0;
+            for (long key : this.keys) {
+                if (key != EMPTY) {
+                    sorted[n++] = key;
+                }
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    // the pattern key: 4 bits of alignment, then 4 bits per letter. S6 letters get
+    // "the how-many-th different letter is this" (0, 1, 2...), C3 letters get WILDCARD.
+    // e.g. "that" fully in S6 -> 0,1,2,0
+    private static long patternKey(byte[] codes, int from, int window, int alignment, int[] firstSeen) {
+        Arrays.fill(firstSeen, -1);
+        int distinct = 0;
+        long key = alignment;
+        for (int k = 0; k < window; k++) {
+            int slot;
+            if ((alignment + k) % 9 < 3) {
+                slot = WILDCARD;
+            } else {
+                int code = codes[from + k];
+                if (firstSeen[code] < 0) {
+                    firstSeen[code] = distinct++;
+                }
+                slot = firstSeen[code];
+            }
+            key = (key << 4) | slot;
+        }
+        return key;
+    }
+
+    // the crib as letter codes (anything that isn't a letter is dropped)
+    private static byte[] toCodes(String crib) {
+        PackedLetters packed = PackedLetters.fromText(crib);
+        byte[] codes = new byte[packed.length()];
+        packed.copyCodes(0, packed.length(), codes, 0);
+        return codes;
+    }
+
+    private static String codesToString(byte[] codes) {
+        char[] chars = new char[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            chars[i] = (char) ('a' + codes[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Usage: java cryptographyproject.CribSearch <ciphertext file> <crib> [more cribs...]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: <ciphertext file> <crib> [more cribs...]");
+            return;
+        }
+        CryptoAnalyzer analyzer = new CryptoAnalyzer(args[0], null);
+        if (!analyzer.isFileLoaded()) {
+            System.out.println("File not found or error reading file. Exiting.");
+            return;
+        }
+        CribSearch search = new CribSearch(analyzer.getCipherLetters());
+        List<String> cribs = Arrays.asList(args).subList(1, args.length);
+
+        long start = System.nanoTime();
+        Map<String, List<Match>> results = search.dragAll(cribs, GuessState.EMPTY);
+        System.out.printf("Dragged %d cribs over %d letters in %.1f ms%n",
+            cribs.size(), analyzer.getCleanLength(), (System.nanoTime() - start) / 1e6);
+
+        for (Map.Entry<String, List<Match>> entry : results.entrySet()) {
+            List<Match> matches = entry.getValue();
+            System.out.println("\n--- Crib '" + entry.getKey() + "': " + matches.size() + " possible spots ---");
+            for (int i = 0; i < Math.min(10, matches.size()); i++) {
+                Match match = matches.get(i);
+                System.out.printf("  offset %6d (block %d, pos %d): +%d letters, key %s, shifts %s%n",
+                    match.getOffset(), match.getOffset() / 9, match.getAlignment(), match.getNewMappings(),
+                    match.getImpliedState(), match.getShifts());
+            }
+        }
+    }
+}
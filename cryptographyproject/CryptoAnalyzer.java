@@ -1,11 +1,16 @@
 package cryptographyproject;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet; // Import HashSet
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,13 +25,46 @@ public class CryptoAnalyzer {
     // we need the alphabet to know what letters to count, same as in MainCipher.
     private static final String theAlphabet = "abcdefghijklmnopqrstuvwxyz";
 
-    private String rawCipherText; // this will hold the original text from the file
-    private String cleanCipherText; // this is the text after we clean it (lowercase, no punctuation)
+    private LetterNormalizer source; // where each clean letter was in the file (we don't keep the raw text itself)
+    private PackedLetters cipherLetters; // the clean letters (lowercase, no punctuation), packed 5 bits each
     private boolean fileLoaded; // just a flag to know if the file read was okay
 
-    // this map will hold our guesses for the S6 substitution part.
-    // Key = cipher char, Value = plain char.
-    private Map<Character, Character> substitutionGuessMap;
+    // this holds our guesses for the S6 substitution part (cipher char -> plain char).
+    // it's an immutable GuessState, so every change makes a new one and we can
+    // keep the old ones for undo/redo.
+    private GuessState guessState = GuessState.EMPTY;
+    private final Deque<GuessState> undoHistory = new ArrayDeque<>();
+    private final Deque<GuessState> redoHistory = new ArrayDeque<>();
+    private static final int MAX_HISTORY = 1000;
+
+    // how many letters countSegmentedGrams unpacks at a time
+    private static final int GRAM_CHUNK_LETTERS = 4096;
+
+    // small LRU caches of things we rendered for a given GuessState, so flipping
+    // back and forth between guesses doesn't redo the whole text every time.
+    // they're bounded by entries AND by total chars: for a huge ciphertext 16
+    // renders would be 16 copies of the whole text, so those just aren't cached.
+    private static final int CACHE_SIZE = 16;
+    private static final long CACHE_CHARS = 4L * 1024 * 1024; // per cache (8 MB of chars)
+    private final TextCache<GuessState> partialTextCache = new TextCache<>(CACHE_SIZE, CACHE_CHARS);
+    private final TextCache<GuessState> fullTextCache = new TextCache<>(CACHE_SIZE, CACHE_CHARS);
+    private final TextCache<String> validationCache = new TextCache<>(CACHE_SIZE * 4, CACHE_CHARS);
+
+    // the crib dragger, with its pattern index. only built if someone uses a crib.
+    private CribSearch cribSearch;
+
+    // scratch space for rendering and scoring, made once and then reused, so the
+    // steady-state guess/render/score loop doesn't make garbage. this (like the
+    // caches above) means one analyzer should only be used by one thread at a time,
+    // use copyWithFreshGuesses() for the others.
+    // the buffers are only kept while they're small. for a really big text they'd
+    // be another copy or two of the whole thing for as long as the analyzer lives,
+    // so then every call makes its own (next to the work of a full pass over
+    // that much text, the allocation hardly counts).
+    private static final int SCRATCH_KEEP_LETTERS = 1024 * 1024;
+    private WordScorer wordScorer; // the dictionary trie, built the first time we score
+    private byte[] plainScratch;   // plain letter codes of the current decryption, -1 = unknown
+    private char[] renderScratch;  // the text we're about to turn into a String
 
     // this will hold all the words from dictionary.txt for fast checking.
     private Set<String> dictionary;
@@ -35,56 +73,137 @@ public class CryptoAnalyzer {
 
     // this is the constructor. when we make a new analyzer, it does all the setup.
     public CryptoAnalyzer(String filename) {
-        // === Step 1: Load the ciphertext file ===
-        try {
-            this.rawCipherText = new String(Files.readAllBytes(Paths.get(filename)));
-            this.cleanCipherText = this.rawCipherText.toLowerCase().replaceAll("[^a-z]", "");
+        this(filename, loadDictionary("dictionary.txt"));
+    }
+
+    // same as above, but reuses a dictionary that was already loaded
+    // (handy when we open lots of files at once). null means "no dictionary".
+    public CryptoAnalyzer(String filename, Set<String> sharedDictionary) {
+        this(sharedDictionary);
+
+        // === Load the ciphertext file ===
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.LOAD);
+        Path path = Paths.get(filename);
+        try (InputStream in = Files.newInputStream(path)) {
+            // one pass over the raw bytes, in chunks, straight into the packed letters
+            this.source = LetterNormalizer.fromStream(in, Files.size(path));
+            this.cipherLetters = this.source.getLetters();
             this.fileLoaded = true;
+            PerfStats.end(span, this.source.getRawLength());
         } catch (IOException e) {
             System.out.println("Oh no, error reading file: " + filename);
-            this.rawCipherText = null;
-            this.cleanCipherText = null;
+            this.source = null;
+            this.cipherLetters = null;
             this.fileLoaded = false;
         }
-        
-        // === Step 2: Set up our empty guess map ===
-        // we fill it with '?' to show we haven't guessed yet.
-        this.substitutionGuessMap = new HashMap<>();
-        for (char c : theAlphabet.toCharArray()) {
-            substitutionGuessMap.put(c, '?'); 
+    }
+
+    // the setup that every analyzer needs, whatever the ciphertext came from
+    private CryptoAnalyzer(Set<String> sharedDictionary) {
+        // (the guess state starts out EMPTY, all '?', see the field above)
+
+        // === Hook up the dictionary ===
+        this.dictionaryLoaded = (sharedDictionary != null);
+        this.dictionary = this.dictionaryLoaded ? sharedDictionary : new HashSet<>();
+    }
+
+    // makes an analyzer straight from ciphertext we already have in memory
+    // (e.g. something uploaded to CrackingService) instead of reading a file.
+    public static CryptoAnalyzer fromCipherText(String rawText, Set<String> sharedDictionary) {
+        CryptoAnalyzer analyzer = new CryptoAnalyzer(sharedDictionary);
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.LOAD);
+        analyzer.source = LetterNormalizer.fromText(rawText);
+        analyzer.cipherLetters = analyzer.source.getLetters();
+        analyzer.fileLoaded = true;
+        PerfStats.end(span, rawText.length());
+        return analyzer;
+    }
+
+    // an LRU cache of rendered text (a LinkedHashMap in access order) that keeps
+    // at most maxEntries strings and maxChars chars in total. a string bigger
+    // than a quarter of maxChars isn't worth keeping, it would push out the rest.
+    private static final class TextCache<K> {
+        private final Map<K, String> entries;
+        private final int maxEntries;
+        private final long maxChars;
+        private long chars;
+
+        TextCache(int maxEntries, long maxChars) {
+            this.entries = new LinkedHashMap<>(maxEntries * 2, 0.75f, true);
+            this.maxEntries = maxEntries;
+            this.maxChars = maxChars;
         }
 
-        // === Step 3: Load the dictionary ===
-        // also initialize and load the dictionary
-        this.dictionary = new HashSet<>();
-        this.dictionaryLoaded = loadDictionary("dictionary.txt");
+        String get(K key) {
+            return this.entries.get(key);
+        }
+
+        void put(K key, String text) {
+            if (text.length() > this.maxChars / 4) {
+                return; // too big, just render it again next time
+            }
+            String old = this.entries.put(key, text);
+            if (old != null) {
+                this.chars -= old.length();
+            }
+            this.chars += text.length();
+
+            // throw out the least recently used ones until we fit again
+            Iterator<Map.Entry<K, String>> eldest = this.entries.entrySet().iterator();
+            while (this.entries.size() > this.maxEntries || this.chars > this.maxChars) {
+                this.chars -= eldest.next().getValue().length();
+                eldest.remove();
+            }
+        }
+    }
+
+    // makes a second analyzer for the same ciphertext with its own, empty guess map.
+    // the letters and the dictionary are shared (not copied), so this is cheap.
+    // that way several people can try different guesses on one text at once.
+    public CryptoAnalyzer copyWithFreshGuesses() {
+        CryptoAnalyzer copy = new CryptoAnalyzer(this.dictionaryLoaded ? this.dictionary : null);
+        copy.source = this.source;
+        copy.cipherLetters = this.cipherLetters;
+        copy.fileLoaded = this.fileLoaded;
+        if (this.wordScorer != null) {
+            copy.wordScorer = this.wordScorer.withFreshScratch(); // same trie, own buffers
+        }
+        return copy;
     }
 
     // this is a helper function to load all the words from dictionary.txt
-    // into our Set for fast lookups.
-    private boolean loadDictionary(String dictFilename) {
+    // into a Set for fast lookups. returns null if the file isn't there.
+    public static Set<String> loadDictionary(String dictFilename) {
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.DICTIONARY_LOAD);
+        Set<String> words = new HashSet<>();
         try (Stream<String> lines = Files.lines(Paths.get(dictFilename))) {
             lines.map(String::toLowerCase) // make lowercase
                  .map(String::trim)        // remove whitespace
                  .map(line -> line.replaceAll("[^a-z]", "")) // remove non-letters
                  // this is the fix from before, we need all words, not just 4+ letters
                  .filter(line -> line.length() > 0) 
-                 .forEach(this.dictionary::add); // add each word to our Set
-            return true; // it worked!
+                 .forEach(words::add); // add each word to our Set
+            PerfStats.end(span, words.size());
+            return words; // it worked!
         } catch (IOException e) {
             // This isn't a total failure, so we just warn the user.
             // The main program will see dictionaryLoaded is false.
-            return false; // file not found
+            return null; // file not found
         }
     }
 
 
     // --- Getters to access the text (kinda boring) ---
-    public String getRawText() { return this.rawCipherText; }
-    public String getCleanText() { return this.cleanCipherText; }
+    public long getRawLength() { return this.source.getRawLength(); } // bytes in the file (chars for fromCipherText)
+    public long getRawOffset(int cleanIndex) { return this.source.rawOffsetOf(cleanIndex); } // where clean letter i was in the file
+    public long getOffsetMapBytes() { return this.source.offsetMapBytes(); }
+    public String getCleanText() { return this.cipherLetters.toString(); } // makes a copy, try not to call this on big files
+    public int getCleanLength() { return this.cipherLetters.length(); }
+    public PackedLetters getCipherLetters() { return this.cipherLetters; }
     public boolean isFileLoaded() { return this.fileLoaded; }
     public boolean isDictionaryLoaded() { return this.dictionaryLoaded; }
     public int getDictionarySize() { return this.dictionary.size(); }
+    public GuessState getGuessState() { return this.guessState; }
     
     // =========================================================================
     // === Interactive Methods
@@ -94,32 +213,69 @@ public class CryptoAnalyzer {
     public void makeGuess(char cipherChar, char plainChar) {
         if (theAlphabet.indexOf(cipherChar) != -1 && theAlphabet.indexOf(plainChar) != -1) {
             // we also check if this plain char is already guessed for another cipher char.
-            // (can't have 'h' -> 'e' AND 'x' -> 'e')
-            for (Map.Entry<Character, Character> entry : substitutionGuessMap.entrySet()) {
-                if (entry.getValue() == plainChar && entry.getKey() != cipherChar) {
-                    System.out.printf("  (Warning: You already guessed '%c' for cipher '%c'. Clearing that guess.)\n", plainChar, entry.getKey());
-                    entry.setValue('?'); // clear the old one
-                }
+            // (can't have 'h' -> 'e' AND 'x' -> 'e') GuessState.with() clears the old one.
+            int oldCipher = this.guessState.cipherCodeFor(plainChar - 'a');
+            if (oldCipher != -1 && oldCipher != cipherChar - 'a') {
+                System.out.printf("  (Warning: You already guessed '%c' for cipher '%c'. Clearing that guess.)\n", plainChar, (char) ('a' + oldCipher));
             }
             // now set the new one
-            this.substitutionGuessMap.put(cipherChar, plainChar);
+            setGuessState(this.guessState.with(cipherChar - 'a', plainChar - 'a'));
         }
     }
 
     // this is called when the user wants to undo a guess, like 'u h'
     public void undoGuess(char cipherChar) {
-        if (this.substitutionGuessMap.containsKey(cipherChar)) {
-            this.substitutionGuessMap.put(cipherChar, '?'); // just set it back to '?'
+        if (theAlphabet.indexOf(cipherChar) != -1) {
+            setGuessState(this.guessState.without(cipherChar - 'a')); // just set it back to '?'
         }
     }
 
+    // this sets the whole guess map at once from a full key,
+    // e.g. one that KeySolver found. key[cipher code] = plain code.
+    public void applyKey(byte[] key) {
+        setGuessState(GuessState.fromKey(key));
+    }
+
+    // switches to a whole new guess state as one step (so one undo brings the old one back)
+    public void setGuessState(GuessState next) {
+        if (next.equals(this.guessState)) {
+            return; // nothing changed, don't clutter the history
+        }
+        this.undoHistory.push(this.guessState);
+        if (this.undoHistory.size() > MAX_HISTORY) {
+            this.undoHistory.removeLast(); // forget the oldest step
+        }
+        this.redoHistory.clear(); // a new step means the old "future" is gone
+        this.guessState = next;
+    }
+
+    // goes back one whole step (a guess, a clear, or a full key). false if there's nothing to undo.
+    public boolean undoStep() {
+        if (this.undoHistory.isEmpty()) {
+            return false;
+        }
+        this.redoHistory.push(this.guessState);
+        this.guessState = this.undoHistory.pop();
+        return true;
+    }
+
+    // goes forward again after an undoStep. false if there's nothing to redo.
+    public boolean redoStep() {
+        if (this.redoHistory.isEmpty()) {
+            return false;
+        }
+        this.undoHistory.push(this.guessState);
+        this.guessState = this.redoHistory.pop();
+        return true;
+    }
+
     // this helper just prints the map out nicely for the user
     public void printGuessMap() {
         System.out.println("--- Current S6 Guessing Map (Cipher -> Plain) ---");
         // we print 13 letters per line to make it fit nicely.
         int count = 0;
         for (char c : theAlphabet.toCharArray()) {
-            System.out.printf("  %c -> %c  ", c, this.substitutionGuessMap.get(c));
+            System.out.printf("  %c -> %c  ", c, this.guessState.plainFor(c));
             count++;
             if (count % 13 == 0) {
                 System.out.println(); // new line
@@ -132,26 +288,68 @@ public class CryptoAnalyzer {
     // with their guesses, but leaves the C3 parts as underscores.
     // this helps the user spot words.
     public String getDecryptedTextWithContext() {
-        StringBuilder partialText = new StringBuilder();
+        // (plain get/put instead of computeIfAbsent(this::...), the method reference would be a new object every call)
+        String text = this.partialTextCache.get(this.guessState);
+        if (text == null) {
+            text = renderPartialText(this.guessState);
+            this.partialTextCache.put(this.guessState, text);
+        }
+        return text;
+    }
+
+    private String renderPartialText(GuessState state) {
+        char[] out = renderBuffer();
+        return new String(out, 0, renderPartialInto(state, out));
+    }
+
+    // the same partial view written into a buffer you already have (at least
+    // getRenderedLength() long), gives back how many chars went in.
+    // this is the no-garbage version of getDecryptedTextWithContext: it never
+    // looks in the cache, so it costs the same right after a new guess.
+    public int renderPartialInto(char[] out) {
+        return renderPartialInto(this.guessState, out);
+    }
+
+    // how many chars a rendered view takes: every letter plus a space per block
+    public int getRenderedLength() {
+        int textLength = this.cipherLetters.length();
+        return textLength + (textLength + 8) / 9;
+    }
+
+    private int renderPartialInto(GuessState state, char[] out) {
+        int textLength = this.cipherLetters.length();
+        int length = 0;
 
         // we go through the text block by block (9 chars at a time)
-        for (int i = 0; i < this.cleanCipherText.length(); i += 9) {
+        for (int i = 0; i < textLength; i += 9) {
             // first, add the C3 part as underscores.
-            partialText.append("___");
+            out[length++] = '_';
+            out[length++] = '_';
+            out[length++] = '_';
 
             // now, process the S6 part (letters 3 through 8)
-            for (int j = 3; j < 9; j++) {
-                if (i + j >= this.cleanCipherText.length()) {
-                    break; // stop if we hit the end of the file
-                }
-                char cipherChar = this.cleanCipherText.charAt(i + j);
-                // look up our guess for this char
-                char plainChar = this.substitutionGuessMap.get(cipherChar); 
-                partialText.append(plainChar); // will append '?' if not guessed
+            int blockEnd = Math.min(i + 9, textLength); // stop if we hit the end of the file
+            for (int j = i + 3; j < blockEnd; j++) {
+                // look up our guess for this char (-1 if not guessed)
+                int plainCode = state.plainCodeFor(this.cipherLetters.codeAt(j));
+                out[length++] = (plainCode < 0) ? '?' : (char) ('a' + plainCode);
             }
-            partialText.append(" "); // add a space between blocks
+            out[length++] = ' '; // add a space between blocks
         }
-        return partialText.toString();
+        return length;
+    }
+
+    // the render buffer: every letter, plus a space per block, plus a bit of room
+    private char[] renderBuffer() {
+        int textLength = this.cipherLetters.length();
+        int needed = textLength + textLength / 9 + 4;
+        if (textLength > SCRATCH_KEEP_LETTERS) {
+            return new char[needed]; // too big to hang on to
+        }
+        if (this.renderScratch == null || this.renderScratch.length < needed) {
+            this.renderScratch = new char[needed];
+        }
+        return this.renderScratch;
     }
 
     // this is the "full attack" function. It tries to decrypt *everything*.
@@ -159,69 +357,122 @@ public class CryptoAnalyzer {
     // THEN, it uses that result to find the Caesar key.
     // THEN, it uses that key to decrypt the C3 part.
     public String getFullyDecryptedText() {
-        StringBuilder fullText = new StringBuilder();
-        
-        // this is our "reverse substitution" map, built from our guesses
-        // (we filter out the '?' guesses)
-        Map<Character, Character> inverseGuessMap = new HashMap<>();
-        for (Map.Entry<Character, Character> entry : this.substitutionGuessMap.entrySet()) {
-            if (entry.getValue() != '?') {
-                inverseGuessMap.put(entry.getKey(), entry.getValue());
+        String text = this.fullTextCache.get(this.guessState);
+        if (text == null) {
+            text = renderFullText(this.guessState);
+            this.fullTextCache.put(this.guessState, text);
+        }
+        return text;
+    }
+
+    private String renderFullText(GuessState state) {
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.FULL_DECRYPTION);
+        int textLength = this.cipherLetters.length();
+        byte[] plain = decodeFull(state, plainBuffer());
+        char[] out = renderBuffer();
+        int length = 0;
+
+        // go through block by block: C3 part, S6 part, then a space
+        for (int i = 0; i < textLength; i += 9) {
+            int blockEnd = Math.min(i + 9, textLength);
+            for (int j = i; j < blockEnd; j++) {
+                out[length++] = (plain[j] < 0) ? '?' : (char) ('a' + plain[j]);
             }
+            out[length++] = ' '; // space between blocks
+        }
+
+        String result = new String(out, 0, length);
+        PerfStats.end(span, textLength);
+        return result;
+    }
+
+    // the full decryption with the current guesses as plain letter codes (-1 = unknown),
+    // written into a buffer you already have (at least getCleanLength() long).
+    // this is the no-garbage version of getFullyDecryptedText.
+    public void decryptFullInto(byte[] out) {
+        decodeFull(this.guessState, out);
+    }
+
+    private byte[] plainBuffer() {
+        int textLength = this.cipherLetters.length();
+        if (textLength > SCRATCH_KEEP_LETTERS) {
+            return new byte[textLength]; // too big to hang on to
         }
+        if (this.plainScratch == null || this.plainScratch.length < textLength) {
+            this.plainScratch = new byte[textLength];
+        }
+        return this.plainScratch;
+    }
+
+    /**
+     * Works out the plain letter codes for every position into 'plain',
+     * -1 where we can't tell yet. S6 letters come straight from the guesses.
+     * The C3 letters need the Caesar key, which is the first plain letter of
+     * the S6 part, so we only decrypt them when the block's whole S6 part is
+     * guessed (and the block is a full 9 letters).
+     */
+    private byte[] decodeFull(GuessState state, byte[] plain) {
+        int textLength = this.cipherLetters.length();
+        for (int i = 0; i < textLength; i += 9) {
+            int blockEnd = Math.min(i + 9, textLength);
 
-        // go through block by block
-        for (int i = 0; i < this.cleanCipherText.length(); i += 9) {
             // --- 1. Get the S6 part ---
-            StringBuilder decryptedS6 = new StringBuilder();
-            boolean s6IsFullyGuessed = true;
-            for (int j = 3; j < 9; j++) {
-                if (i + j >= this.cleanCipherText.length()) {
-                    s6IsFullyGuessed = false;
-                    break; 
-                }
-                char cipherChar = this.cleanCipherText.charAt(i + j);
-                char plainChar = inverseGuessMap.getOrDefault(cipherChar, '?');
-                if (plainChar == '?') {
+            boolean s6IsFullyGuessed = (blockEnd == i + 9); // a short last block never is
+            for (int j = i + 3; j < blockEnd; j++) {
+                plain[j] = (byte) state.plainCodeFor(this.cipherLetters.codeAt(j));
+                if (plain[j] < 0) {
                     s6IsFullyGuessed = false; // we can't find the key if this part isn't guessed
                 }
-                decryptedS6.append(plainChar);
             }
 
-            // --- 2. Try to get the Caesar key ---
-            int shiftKey = -1; // -1 means 'unknown'
-            // we can only find the key if the S6 part is fully guessed
-            if (s6IsFullyGuessed && decryptedS6.length() > 0) {
-                char keyChar = decryptedS6.charAt(0); // the key is the first letter of the S6 plain text
-                shiftKey = theAlphabet.indexOf(keyChar);
-            }
+            // --- 2. Get the Caesar key (the first letter of the S6 plain text) ---
+            int shiftKey = s6IsFullyGuessed ? plain[i + 3] : -1; // -1 means 'unknown'
 
             // --- 3. Decrypt the C3 part ---
-            StringBuilder decryptedC3 = new StringBuilder();
-            for (int j = 0; j < 3; j++) {
-                if (i + j >= this.cleanCipherText.length()) {
-                    break;
-                }
-                char cipherChar = this.cleanCipherText.charAt(i + j);
-                
-                if (shiftKey == -1) {
-                    // we don't know the key, so just put a placeholder
-                    decryptedC3.append('?');
-                } else {
-                    // we know the key! let's decrypt the C3 part.
-                    int cIdx = theAlphabet.indexOf(cipherChar);
-                    int pIdx = (cIdx - shiftKey + 26) % 26; // +26 handles negatives
-                    decryptedC3.append(theAlphabet.charAt(pIdx));
-                }
+            for (int j = i; j < Math.min(i + 3, blockEnd); j++) {
+                plain[j] = (shiftKey < 0) ? -1 : (byte) ((this.cipherLetters.codeAt(j) - shiftKey + 26) % 26);
             }
-            
-            // add this block's result to our final string
-            fullText.append(decryptedC3);
-            fullText.append(decryptedS6);
-            fullText.append(" "); // space between blocks
         }
+        return plain;
+    }
+
+    // the word score of the full decryption with the current guesses.
+    // same number as scoreText(getFullyDecryptedText()), but without making
+    // the text at all, so it allocates nothing once the buffers exist.
+    public int scoreFullDecryption() {
+        if (!this.dictionaryLoaded) {
+            return 0;
+        }
+        return scorer().scoreBlocks(decodeFull(this.guessState, plainBuffer()), this.cipherLetters.length(), true);
+    }
+
+    // same for the partial S6 view (scoreText(getDecryptedTextWithContext()))
+    public int scorePartialDecryption() {
+        if (!this.dictionaryLoaded) {
+            return 0;
+        }
+        return scorer().scoreBlocks(decodeFull(this.guessState, plainBuffer()), this.cipherLetters.length(), false);
+    }
 
-        return fullText.toString();
+    // a BatchScorer for this ciphertext, for scoring thousands of candidate keys
+    // at once (on sampled blocks, in parallel). shares our dictionary trie.
+    public BatchScorer newBatchScorer(LanguageModel model, int windowBlocks, int windowCount) {
+        WordScorer words = this.dictionaryLoaded ? scorer() : null;
+        return new BatchScorer(this.cipherLetters, words, model, windowBlocks, windowCount);
+    }
+
+    // use a dictionary trie that was already built (for the same dictionary) instead
+    // of building our own the first time we score. handy for a service that keeps
+    // lots of ciphertexts around, the trie only has to exist once.
+    public void shareWordScorer(WordScorer shared) {
+        this.wordScorer = shared.withFreshScratch();
+    }
+
+    private WordScorer scorer() {
+        if (this.wordScorer == null) {
+            this.wordScorer = new WordScorer(this.dictionary);
+        }
+        return this.wordScorer;
     }
 
 
@@ -229,6 +480,37 @@ public class CryptoAnalyzer {
     // === NEW Validation Method
     // =========================================================================
 
+    // every spot where a known word (a "crib") could be in the plaintext,
+    // given the guesses we have now. see CribSearch for how it works.
+    public synchronized List<CribSearch.Match> dragCrib(String crib) {
+        if (this.cribSearch == null) {
+            this.cribSearch = new CribSearch(this.cipherLetters);
+        }
+        return this.cribSearch.drag(crib, this.guessState);
+    }
+
+    // validates the current partial S6 text ('v'). cached per guess state.
+    public String validatePartialText(boolean showAll) {
+        String cacheKey = "partial/" + showAll + "/" + this.guessState;
+        String result = this.validationCache.get(cacheKey);
+        if (result == null) {
+            result = validateText(getDecryptedTextWithContext(), showAll);
+            this.validationCache.put(cacheKey, result);
+        }
+        return result;
+    }
+
+    // validates the current full decryption attempt ('a'). cached per guess state.
+    public String validateFullText(boolean showAll) {
+        String cacheKey = "full/" + showAll + "/" + this.guessState;
+        String result = this.validationCache.get(cacheKey);
+        if (result == null) {
+            result = validateText(getFullyDecryptedText(), showAll);
+            this.validationCache.put(cacheKey, result);
+        }
+        return result;
+    }
+
     // this is a simple helper (overloaded method)
     // it just calls the main validator and tells it to *not* show all.
     public String validateText(String decryptedText) {
@@ -242,47 +524,16 @@ public class CryptoAnalyzer {
         if (!this.dictionaryLoaded) {
             return "==> Dictionary not loaded. Skipping validation.";
         }
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.VALIDATION);
+
+        WordScorer scorer = scorer();
+        int totalScore = scorer.score(decryptedText);
+        PerfStats.end(span, decryptedText.length());
 
         // Use a Set to automatically handle duplicates
         Set<String> foundWordsSet = new HashSet<>();
-        int totalScore = 0; // we will score based on the length of words found
-
-        // === Strategy 1: Check for words *inside* partial fragments ===
-        // This checks if "had" is inside "ehadan".
-        String[] blocks = decryptedText.split(" "); // ["___e?a?an", "___in?con", ...]
-        
-        for (String block : blocks) {
-            if (block.length() <= 3) continue; // Skip empty/invalid blocks ("___")
-
-            // Get just the S6 part, e.g., "e?a?an" or "ential"
-            String s6Fragment = block.substring(3);
-            String cleanFragment = s6Fragment.replaceAll("\\?", ""); // "eaan" or "ential"
-            
-            // check for at least 2 known letters to find short words
-            if (cleanFragment.length() < 2) continue; 
-
-            // Check if any dictionary word is a SUBSTRING of the clean fragment
-            for (String word : this.dictionary) {
-                if (cleanFragment.contains(word)) {
-                    // Example: "ehadan" (from e?a?an) contains "had"
-                    if (foundWordsSet.add(word)) { // .add() returns true if the word was new
-                        totalScore += word.length() * 2; // Score these partials higher
-                    }
-                }
-            }
-        }
-
-
-        // === Strategy 2: Check the combined string for fully-formed words ===
-        // This finds words like "confidential" that span blocks
-        String cleanCombined = decryptedText.replaceAll("[^a-z]", "");
-        for (String word : this.dictionary) {
-            // this is the fix: check *all* words, not just 4+ letters
-            if (cleanCombined.contains(word)) {
-                if (foundWordsSet.add(word)) { // .add() returns true if the word was new
-                    totalScore += word.length();
-                }
-            }
+        for (int i = 0; i < scorer.getFoundCount(); i++) {
+            foundWordsSet.add(scorer.getFoundWord(i));
         }
 
         if (foundWordsSet.isEmpty()) {
@@ -306,44 +557,47 @@ public class CryptoAnalyzer {
         return "==> Word Score: " + totalScore + ". " + displayMessage + displayWords;
     }
 
+    // same scoring as validateText, but just gives back the number
+    // (0 if there is no dictionary). used by the automatic attacks.
+    public int scoreText(String decryptedText) {
+        if (!this.dictionaryLoaded) {
+            return 0;
+        }
+        return scorer().score(decryptedText);
+    }
 
     // =========================================================================
     // === All methods from here down are your excellent analysis functions ===
     // =========================================================================
 
     // === Section 1: Core Frequency Analysis Methods ===
+    // all of these count straight off the packed letter codes into plain int
+    // arrays (26, 26*26 or 26*26*26 slots) and only turn them into a Map at the end.
     
     // this counts every single letter in the *entire* clean text
     public Map<Character, Integer> getSingleLetterFrequencies() {
-        Map<Character, Integer> frequencies = new HashMap<>();
-        // set all counts to 0 first
-        for (char c : theAlphabet.toCharArray()) {
-            frequencies.put(c, 0);
-        }
-        // now count 'em up
-        for (char c : this.cleanCipherText.toCharArray()) {
-            frequencies.put(c, frequencies.getOrDefault(c, 0) + 1);
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.SINGLE_FREQUENCIES);
+        int[] counts = new int[26];
+        for (int i = 0; i < this.cipherLetters.length(); i++) {
+            counts[this.cipherLetters.codeAt(i)]++;
         }
-        return frequencies;
+        PerfStats.end(span, this.cipherLetters.length());
+        return letterCountsToMap(counts);
     }
 
     // this counts pairs of letters (diagrams)
     public Map<String, Integer> getDiagramFrequencies() {
-        Map<String, Integer> frequencies = new HashMap<>();
-        for (int i = 0; i < this.cleanCipherText.length() - 1; i++) {
-            String diagram = this.cleanCipherText.substring(i, i + 2);
-            frequencies.put(diagram, frequencies.getOrDefault(diagram, 0) + 1);
-        }
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.DIAGRAM_FREQUENCIES);
+        Map<String, Integer> frequencies = getSegmentedGramFrequencies(this.cipherLetters.length(), 0, this.cipherLetters.length(), 2);
+        PerfStats.end(span, this.cipherLetters.length());
         return frequencies;
     }
 
     // this counts groups of three letters (trigrams)
     public Map<String, Integer> getTrigramFrequencies() {
-        Map<String, Integer> frequencies = new HashMap<>();
-        for (int i = 0; i < this.cleanCipherText.length() - 2; i++) {
-            String trigram = this.cleanCipherText.substring(i, i + 3);
-            frequencies.put(trigram, frequencies.getOrDefault(trigram, 0) + 1);
-        }
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.TRIGRAM_FREQUENCIES);
+        Map<String, Integer> frequencies = getSegmentedGramFrequencies(this.cipherLetters.length(), 0, this.cipherLetters.length(), 3);
+        PerfStats.end(span, this.cipherLetters.length());
         return frequencies;
     }
 
@@ -352,21 +606,19 @@ public class CryptoAnalyzer {
     // this is the main attack function. it only counts letters
     // in specific *parts* of the 9-char blocks.
     public Map<Character, Integer> getSegmentedFrequencies(int blockSize, int segmentStart, int segmentLength) {
-        Map<Character, Integer> frequencies = new HashMap<>();
-        // set all counts to 0 first
-        for (char c : theAlphabet.toCharArray()) {
-            frequencies.put(c, 0);
-        }
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.SEGMENT_FREQUENCIES);
+        int[] counts = new int[26];
+        int textLength = this.cipherLetters.length();
         
         // loop through the text block by block
-        for (int blockStart = 0; blockStart < this.cleanCipherText.length(); blockStart += blockSize) {
+        for (int blockStart = 0; blockStart < textLength; blockStart += blockSize) {
             int segmentIndex = blockStart + segmentStart;
             // now loop *inside* the segment we care about (e.g., letters 3-8)
             for (int i = 0; i < segmentLength; i++) {
                 int charIndex = segmentIndex + i;
                 
                 // safety checks to make sure we don't go out of bounds
-                if (charIndex >= this.cleanCipherText.length()) {
+                if (charIndex >= textLength) {
                     break; 
                 }
                 if (charIndex >= blockStart + blockSize) {
@@ -374,11 +626,11 @@ public class CryptoAnalyzer {
                 }
                 
                 // if we're safe, count the letter
-                char c = this.cleanCipherText.charAt(charIndex);
-                frequencies.put(c, frequencies.getOrDefault(c, 0) + 1);
+                counts[this.cipherLetters.codeAt(charIndex)]++;
             }
         }
-        return frequencies;
+        PerfStats.end(span, textLength);
+        return letterCountsToMap(counts);
     }
 
     // --- NEW METHODS FOR SEGMENTED DIAGRAMS/TRIGRAMS ---
@@ -388,28 +640,9 @@ public class CryptoAnalyzer {
      * This is very powerful for analysis.
      */
     public Map<String, Integer> getSegmentedDiagramFrequencies(int blockSize, int segmentStart, int segmentLength) {
-        Map<String, Integer> frequencies = new HashMap<>();
-        // loop through the text block by block
-        for (int blockStart = 0; blockStart < this.cleanCipherText.length(); blockStart += blockSize) {
-            int segmentIndex = blockStart + segmentStart;
-            // now loop *inside* the segment (e.g., letters 3-8)
-            for (int i = 0; i < segmentLength - 1; i++) { // -1 because we need pairs
-                int charIndex1 = segmentIndex + i;
-                int charIndex2 = charIndex1 + 1;
-                
-                // safety checks to make sure we don't go out of bounds
-                if (charIndex2 >= this.cleanCipherText.length()) {
-                    break; 
-                }
-                if (charIndex2 >= blockStart + blockSize) {
-                    break;
-                }
-                
-                // if we're safe, get the diagram
-                String diagram = "" + this.cleanCipherText.charAt(charIndex1) + this.cleanCipherText.charAt(charIndex2);
-                frequencies.put(diagram, frequencies.getOrDefault(diagram, 0) + 1);
-            }
-        }
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.SEGMENT_DIAGRAMS);
+        Map<String, Integer> frequencies = getSegmentedGramFrequencies(blockSize, segmentStart, segmentLength, 2);
+        PerfStats.end(span, this.cipherLetters.length());
         return frequencies;
     }
 
@@ -418,47 +651,128 @@ public class CryptoAnalyzer {
      * This is the most powerful tool for finding "the".
      */
     public Map<String, Integer> getSegmentedTrigramFrequencies(int blockSize, int segmentStart, int segmentLength) {
-        Map<String, Integer> frequencies = new HashMap<>();
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.SEGMENT_TRIGRAMS);
+        Map<String, Integer> frequencies = getSegmentedGramFrequencies(blockSize, segmentStart, segmentLength, 3);
+        PerfStats.end(span, this.cipherLetters.length());
+        return frequencies;
+    }
+
+    /**
+     * Counts every n-gram (n = 2 or 3) that sits completely inside a segment.
+     * The counts go into a flat array indexed by the letter codes in base 26,
+     * e.g. "the" -> ((19 * 26) + 7) * 26 + 4. The whole text is one big
+     * "segment" when blockSize == segmentLength == the text length.
+     *
+     * The letters are unpacked a few KB at a time into one small buffer and
+     * the gram code is rolled along (drop the oldest letter, add the new one),
+     * so a whole-text count never makes an unpacked copy of the text.
+     */
+    public int[] countSegmentedGrams(int blockSize, int segmentStart, int segmentLength, int n) {
+        int gramCount = pow26(n);
+        int[] counts = new int[gramCount];
+        int textLength = this.cipherLetters.length();
+        byte[] chunk = new byte[Math.max(1, Math.min(GRAM_CHUNK_LETTERS, segmentLength))];
+
         // loop through the text block by block
-        for (int blockStart = 0; blockStart < this.cleanCipherText.length(); blockStart += blockSize) {
+        for (int blockStart = 0; blockStart < textLength; blockStart += blockSize) {
             int segmentIndex = blockStart + segmentStart;
-            // now loop *inside* the segment (e.g., letters 3-8)
-            for (int i = 0; i < segmentLength - 2; i++) { // -2 because we need triples
-                int charIndex1 = segmentIndex + i;
-                int charIndex2 = charIndex1 + 1;
-                int charIndex3 = charIndex1 + 2;
-                
-                // safety checks to make sure we don't go out of bounds
-                if (charIndex3 >= this.cleanCipherText.length()) {
-                    break; 
-                }
-                if (charIndex3 >= blockStart + blockSize) {
-                    break;
+            // the segment stops at the end of the text or the end of the block, whichever is first
+            int segmentEnd = Math.min(Math.min(segmentIndex + segmentLength, blockStart + blockSize), textLength);
+            if (segmentEnd - segmentIndex < n) {
+                continue; // not enough letters left for even one n-gram
+            }
+
+            // the gram carries on from one chunk to the next, it only restarts per segment
+            int gram = 0;
+            int seen = 0;
+            for (int from = segmentIndex; from < segmentEnd; from += chunk.length) {
+                int count = Math.min(chunk.length, segmentEnd - from);
+                this.cipherLetters.copyCodes(from, count, chunk, 0);
+                for (int i = 0; i < count; i++) {
+                    gram = (gram * 26 + chunk[i]) % gramCount;
+                    if (++seen >= n) {
+                        counts[gram]++;
+                    }
                 }
-                
-                // if we're safe, get the trigram
-                String trigram = "" + this.cleanCipherText.charAt(charIndex1) 
-                                    + this.cleanCipherText.charAt(charIndex2) 
-                                    + this.cleanCipherText.charAt(charIndex3);
-                frequencies.put(trigram, frequencies.getOrDefault(trigram, 0) + 1);
             }
         }
+        return counts;
+    }
+
+
+    /**
+     * The approximate version for long n-grams (4, 5, 6...), where an exact
+     * count array would be way too big. Feeds the text through a Count-Min
+     * sketch (see NGramSketch) and gives back the filled sketch: topGrams()
+     * for the top K n-grams and getTotal() for how many were counted, which
+     * is what the percentages in printFrequencyMap have to be out of.
+     * Pass blockSize 0 for the whole text.
+     */
+    public NGramSketch getApproximateGramSketch(int blockSize, int segmentStart, int segmentLength,
+                                                int n, double epsilon, double delta, int topK) {
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.SKETCH_NGRAMS);
+        NGramSketch sketch = new NGramSketch(n, blockSize, segmentStart, segmentLength, epsilon, delta, topK);
+        sketch.addLetters(this.cipherLetters);
+        PerfStats.end(span, this.cipherLetters.length());
+        return sketch;
+    }
+
+    // same as countSegmentedGrams, but gives back the usual "ab" -> count map
+    private Map<String, Integer> getSegmentedGramFrequencies(int blockSize, int segmentStart, int segmentLength, int n) {
+        int[] counts = countSegmentedGrams(blockSize, segmentStart, segmentLength, n);
+        Map<String, Integer> frequencies = new HashMap<>();
+        char[] gram = new char[n];
+        for (int index = 0; index < counts.length; index++) {
+            if (counts[index] == 0) {
+                continue; // only keep the n-grams we actually saw, same as before
+            }
+            int rest = index;
+            for (int k = n - 1; k >= 0; k--) {
+                gram[k] = theAlphabet.charAt(rest % 26);
+                rest /= 26;
+            }
+            frequencies.put(new String(gram), counts[index]);
+        }
+        return frequencies;
+    }
+
+    // turns a 26-slot count array into the 'a' -> count map (all 26 letters, even zeros)
+    private static Map<Character, Integer> letterCountsToMap(int[] counts) {
+        Map<Character, Integer> frequencies = new HashMap<>();
+        for (int i = 0; i < 26; i++) {
+            frequencies.put(theAlphabet.charAt(i), counts[i]);
+        }
         return frequencies;
     }
 
+    // 26 to the power of n (how many different n-grams there are)
+    private static int pow26(int n) {
+        int size = 1;
+        for (int k = 0; k < n; k++) {
+            size *= 26;
+        }
+        return size;
+    }
+
 
     // === Section 3: Helper and Display Methods ===
 
     // this is the cool function that prints the frequency graphs with bars
     public static void printFrequencyMap(String title, Map<?, Integer> dataMap, int topN) {
-        Map<?, Integer> sortedMap = sortMapByValue(dataMap);
-        
-        // first, get the total count of all items
+        // the total is just all the counts in the map added up
         long totalCount = 0;
-        for (Integer count : sortedMap.values()) {
+        for (Integer count : dataMap.values()) {
             totalCount += count;
         }
-        
+        printFrequencyMap(title, dataMap, topN, totalCount);
+    }
+
+    // same, but the percentages are out of 'totalCount' instead of the map's own sum.
+    // for maps that only hold the top few items (like NGramSketch.topGrams()),
+    // where the map's sum would make the top ones look way more common than they are.
+    public static void printFrequencyMap(String title, Map<?, Integer> dataMap, int topN, long totalCount) {
+        Map<?, Integer> sortedMap = sortMapByValue(dataMap);
+
         // find the biggest count (this will be the longest bar)
         int maxCount = 0;
         if (!sortedMap.isEmpty()) {
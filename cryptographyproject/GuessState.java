@@ -0,0 +1,124 @@
+package cryptographyproject;
+
+import java.util.Arrays;
+
+// this is one complete set of S6 guesses (cipher letter -> plain letter),
+// frozen so it can never change. every 'g' or 'u' makes a *new* GuessState
+// instead of editing the old one, which makes undo/redo trivial (just keep
+// the old ones around) and lets us use a state as a cache key.
+//
+// it's stored as 26 bytes, one per cipher letter: the plain letter code
+// (0..25), or -1 if we haven't guessed that one yet.
+public final class GuessState {
+
+    private static final byte UNKNOWN = -1;
+
+    // the state with no guesses at all
+    public static final GuessState EMPTY = new GuessState(emptyMapping());
+
+    private final byte[] mapping;
+    private final int hash; // worked out once, since we use these as HashMap keys a lot
+
+    private GuessState(byte[] mapping) {
+        this.mapping = mapping;
+        this.hash = Arrays.hashCode(mapping);
+    }
+
+    private static byte[] emptyMapping() {
+        byte[] mapping = new byte[26];
+        Arrays.fill(mapping, UNKNOWN);
+        return mapping;
+    }
+
+    // a full key, like the ones KeySolver finds. key[cipher code] = plain code.
+    public static GuessState fromKey(byte[] key) {
+        return new GuessState(key.clone());
+    }
+
+    // the plain letter code guessed for this cipher letter code, or -1
+    public int plainCodeFor(int cipherCode) {
+        return this.mapping[cipherCode];
+    }
+
+    // same thing with letters: the plain letter for this cipher letter, or '?'
+    public char plainFor(char cipherChar) {
+        int plain = this.mapping[cipherChar - 'a'];
+        return (plain == UNKNOWN) ? '?' : (char) ('a' + plain);
+    }
+
+    // which cipher letter code is currently guessed as this plain letter code, or -1
+    public int cipherCodeFor(int plainCode) {
+        for (int c = 0; c < 26; c++) {
+            if (this.mapping[c] == plainCode) {
+                return c;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    // a new state with cipher -> plain added. any other cipher letter that was
+    // already guessed as the same plain letter gets cleared (can't have two).
+    public GuessState with(int cipherCode, int plainCode) {
+        byte[] next = this.mapping.clone();
+        for (int c = 0; c < 26; c++) {
+            if (next[c] == plainCode) {
+                next[c] = UNKNOWN;
+            }
+        }
+        next[cipherCode] = (byte) plainCode;
+        return new GuessState(next);
+    }
+
+    // a new state with the guess for this cipher letter cleared
+    public GuessState without(int cipherCode) {
+        if (this.mapping[cipherCode] == UNKNOWN) {
+            return this;
+        }
+        byte[] next = this.mapping.clone();
+        next[cipherCode] = UNKNOWN;
+        return new GuessState(next);
+    }
+
+    // copies the mapping into a 26-byte array you already have (no allocation)
+    public void copyInto(byte[] out) {
+        System.arraycopy(this.mapping, 0, out, 0, 26);
+    }
+
+    // how many cipher letters have a guess
+    public int guessedCount() {
+        int count = 0;
+        for (byte plain : this.mapping) {
+            if (plain != UNKNOWN) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof GuessState)) {
+            return false;
+        }
+        GuessState that = (GuessState) other;
+        return this.hash == that.hash && Arrays.equals(this.mapping, that.mapping);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    // the 26 plain letters in cipher order a..z, '?' for unknown (e.g. "??e?t?...")
+    @Override
+    public String toString() {
+        char[] letters = new char[26];
+        for (int c = 0; c < 26; c++) {
+            letters[c] = plainFor((char) ('a' + c));
+        }
+        return new String(letters);
+    }
+}
@@ -0,0 +1,42 @@
+package cryptographyproject;
+
+// the one JSON string escaper for everything that writes JSON by hand
+// (CrackingService answers, SessionReplay reports). we don't pull in a JSON
+// library for a few flat objects, but every string that goes between quotes
+// has to come through here, otherwise a '\' or a newline in a message or a
+// file name breaks the whole document.
+public final class JsonText {
+
+    private JsonText() {
+        // just static helpers
+    }
+
+    // the inside of a JSON string: quotes, backslashes and control characters all escaped.
+    // null comes out as "null" (the text), same as String.valueOf.
+    public static String escape(String text) {
+        String value = String.valueOf(text);
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':  escaped.append("\\\""); break;
+                case '\\': escaped.append("\\\\"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                default:
+                    if (c < 0x20 || c == 0x7F) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+
+    // the same thing with the quotes around it
+    public static String quote(String text) {
+        return "\"" + escape(text) + "\"";
+    }
+}
@@ -0,0 +1,431 @@
+package cryptographyproject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// this splits the S6 key search over several worker JVMs (KeySearchWorker).
+// one JVM can only try so many random restarts, so for long or noisy
+// ciphertexts we cut the restart seeds into "work units" and hand them out
+// over local sockets. the workers send every key they find back right away,
+// so we always have the best key so far. if a worker dies, its unfinished
+// unit goes back in the queue for someone else. as soon as the best key's
+// dictionary score is good enough we stop everybody early.
+//
+// "dies" includes hanging: a stopped, stuck or cut-off worker never closes its
+// socket, so reading from it would wait forever. but a worker sends a RESULT
+// after every single seed, and one hill climb takes about the same time however
+// long the text is (it only looks at the distinct trigrams, at most 26^3). so
+// if a worker with a unit says nothing for workerTimeoutMillis, we hang up on
+// it and its unit goes back in the queue, same as if it had crashed.
+//
+// Messages (DataOutputStream, one type byte first):
+//   coordinator -> worker: JOB (trigram counts), WORK (unit id, first seed, seed count), STOP
+//   worker -> coordinator: RESULT (unit id, seed, score, 26-byte key), DONE (unit id)
+public class KeySearchCoordinator {
+
+    static final byte MSG_JOB = 1;
+    static final byte MSG_WORK = 2;
+    static final byte MSG_STOP = 3;
+    static final byte MSG_RESULT = 10;
+    static final byte MSG_DONE = 11;
+
+    // how long a worker that has a unit may stay quiet (one seed normally takes well under a second)
+    public static final long DEFAULT_WORKER_TIMEOUT_MILLIS = 30_000;
+
+    // one range of seeds for a worker to try
+    private static final class WorkUnit {
+        final int id;
+        final long firstSeed;
+        final int seeds;
+
+        WorkUnit(int id, long firstSeed, int seeds) {
+            this.id = id;
+            this.firstSeed = firstSeed;
+            this.seeds = seeds;
+        }
+    }
+
+    private final CryptoAnalyzer analyzer;
+    private final int[] trigramCounts;
+    private final double wordScoreThreshold; // word score per letter that counts as "cracked"
+    private final long workerTimeoutMillis;
+
+    private final ConcurrentLinkedDeque<WorkUnit> pending = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger unitsLeft = new AtomicInteger();
+    private final AtomicLong seedsTried = new AtomicLong();
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final List<Process> workers = new ArrayList<>();
+    private final CountDownLatch jobStarted = new CountDownLatch(1); // opened once search() has queued every unit
+    private final CountDownLatch finishedLatch = new CountDownLatch(1);
+    private volatile boolean finished = false;
+    private volatile boolean stoppedEarly = false;
+    private ServerSocket server;
+
+    // best key so far (guarded by 'this')
+    private byte[] bestKey;
+    private double bestScore = Double.NEGATIVE_INFINITY;
+    private double bestWordScore;
+
+    public KeySearchCoordinator(CryptoAnalyzer analyzer, double wordScoreThreshold) {
+        this(analyzer, wordScoreThreshold, DEFAULT_WORKER_TIMEOUT_MILLIS);
+    }
+
+    public KeySearchCoordinator(CryptoAnalyzer analyzer, double wordScoreThreshold, long workerTimeoutMillis) {
+        if (workerTimeoutMillis < 1 || workerTimeoutMillis > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("the worker timeout must be between 1 and " + Integer.MAX_VALUE + " ms");
+        }
+        this.analyzer = analyzer;
+        this.trigramCounts = analyzer.countSegmentedGrams(9, 3, 6, 3);
+        this.wordScoreThreshold = wordScoreThreshold;
+        this.workerTimeoutMillis = workerTimeoutMillis;
+    }
+
+    // --- Getters for the result ---
+    public synchronized byte[] getBestKey() { return (this.bestKey == null) ? null : this.bestKey.clone(); }
+    public synchronized double getBestScore() { return this.bestScore; }
+    public synchronized double getBestWordScore() { return this.bestWordScore; }
+    public long getSeedsTried() { return this.seedsTried.get(); } // seeds of completed units only
+    public boolean wasStoppedEarly() { return this.stoppedEarly; }
+
+    // opens the server socket on 127.0.0.1 (any free port) and starts taking workers
+    public int listen() throws IOException {
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this.server.getLocalPort();
+    }
+
+    // starts 'count' worker JVMs on this machine, using our own java and classpath
+    public void spawnLocalWorkers(int count, int port) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int w = 0; w < count; w++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "cryptographyproject.KeySearchWorker", "127.0.0.1", String.valueOf(port));
+            builder.inheritIO();
+            this.workers.add(builder.start());
+        }
+    }
+
+    // kills one of the workers we started (to check that its work gets handed out again)
+    public void killWorker(int index) {
+        if (index < this.workers.size()) {
+            System.out.println("!! Killing worker process " + this.workers.get(index).pid() + " on purpose.");
+            this.workers.get(index).destroyForcibly();
+        }
+    }
+
+    /**
+     * Cuts seeds [0, totalSeeds) into units of 'seedsPerUnit', waits until they are
+     * all done (or the threshold is hit, or the timeout runs out), and returns true
+     * if the search finished. The best key is in getBestKey() either way.
+     */
+    public boolean search(long totalSeeds, int seedsPerUnit, long timeoutMillis) throws InterruptedException {
+        // set the count BEFORE any unit is visible, or a fast worker could finish
+        // one and count down from 0 before we get here
+        int unitCount = (int) ((totalSeeds + seedsPerUnit - 1) / seedsPerUnit);
+        this.unitsLeft.set(unitCount);
+        int id = 0;
+        for (long seed = 0; seed < totalSeeds; seed += seedsPerUnit) {
+            this.pending.add(new WorkUnit(id++, seed, (int) Math.min(seedsPerUnit, totalSeeds - seed)));
+        }
+        this.jobStarted.countDown(); // workers that connected early can start now
+        if (unitCount == 0) {
+            finish();
+        }
+        boolean done = this.finishedLatch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        finish();
+        return done;
+    }
+
+    private void acceptLoop() {
+        while (!this.finished) {
+            try {
+                Socket socket = this.server.accept();
+                this.connections.add(socket);
+                Thread handler = new Thread(() -> handleWorker(socket), "coordinator-worker-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return; // server socket closed, we're done
+            }
+        }
+    }
+
+    // talks to one worker until there's no work left or it dies
+    private void handleWorker(Socket socket) {
+        WorkUnit current = null;
+        try {
+            // every read below is a worker that owes us a RESULT or DONE, so a
+            // timeout on any of them means it's hung (see the top of the file)
+            socket.setSoTimeout((int) this.workerTimeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeByte(MSG_JOB);
+            writeCounts(out, this.trigramCounts);
+            out.flush();
+
+            // a worker can connect before search() has queued anything; wait for it
+            // instead of thinking "no units left" and sending it home
+            while (!this.finished && !this.jobStarted.await(100, TimeUnit.MILLISECONDS)) {
+                // still waiting
+            }
+
+            while (!this.finished) {
+                current = this.pending.poll();
+                if (current == null) {
+                    if (this.unitsLeft.get() == 0) {
+                        break;
+                    }
+                    // someone else still has a unit; if they die we'll want to pick it up
+                    Thread.sleep(20);
+                    continue;
+                }
+
+                out.writeByte(MSG_WORK);
+                out.writeInt(current.id);
+                out.writeLong(current.firstSeed);
+                out.writeInt(current.seeds);
+                out.flush();
+
+                // read results until the worker says the unit is done
+                while (true) {
+                    byte type = in.readByte();
+                    int unitId = in.readInt();
+                    if (type == MSG_DONE && unitId == current.id) {
+                        break;
+                    }
+                    if (type != MSG_RESULT) {
+                        throw new IOException("unexpected message type " + type);
+                    }
+                    long seed = in.readLong();
+                    double score = in.readDouble();
+                    byte[] key = new byte[26];
+                    in.readFully(key);
+                    offer(key, score, seed);
+                }
+                // count the seeds once, when the unit is really done (a unit that's
+                // handed out again after a worker died isn't counted twice)
+                this.seedsTried.addAndGet(current.seeds);
+                current = null;
+                if (this.unitsLeft.decrementAndGet() == 0) {
+                    finish();
+                }
+            }
+
+            out.writeByte(MSG_STOP);
+            out.flush();
+        } catch (IOException e) {
+            if (!this.finished && current != null) {
+                // the worker died (or hung) in the middle of a unit: put it back for the others
+                String what = (e instanceof SocketTimeoutException)
+                    ? "said nothing for " + this.workerTimeoutMillis + " ms"
+                    : "died";
+                System.out.println("!! Worker on port " + socket.getPort() + " " + what + ", handing unit "
+                    + current.id + " to another worker.");
+                this.pending.addFirst(current);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    // a worker found a key. keep it if it's the best yet, and stop if it's good enough.
+    private void offer(byte[] key, double score, long seed) {
+        synchronized (this) {
+            if (score <= this.bestScore) {
+                return;
+            }
+            this.bestKey = key;
+            this.bestScore = score;
+        }
+
+        // how English does the full decryption look? (dictionary score per letter)
+        // this decrypts the whole text, so it's done outside the lock
+        CryptoAnalyzer check = this.analyzer.copyWithFreshGuesses();
+        check.applyKey(key);
+        int letters = Math.max(1, check.getCleanLength());
+        double wordScore = (double) check.scoreFullDecryption() / letters;
+
+        synchronized (this) {
+            if (this.bestKey != key) {
+                return; // a better key came in while we were scoring this one
+            }
+            this.bestWordScore = wordScore;
+            System.out.printf("  new best from seed %d: score %.1f, word score %.3f per letter%n", seed, score, wordScore);
+        }
+
+        if (this.wordScoreThreshold > 0 && wordScore >= this.wordScoreThreshold) {
+            this.stoppedEarly = true;
+            finish();
+        }
+    }
+
+    // stops everything: no more units, close all sockets so the workers quit
+    private void finish() {
+        if (this.finished) {
+            return;
+        }
+        this.finished = true;
+        this.finishedLatch.countDown();
+        closeQuietly(this.server);
+        for (Socket socket : this.connections) {
+            closeQuietly(socket);
+        }
+    }
+
+    // waits a little for the worker processes to exit, then makes sure they're gone
+    public void shutdownWorkers() throws InterruptedException {
+        for (Process worker : this.workers) {
+            if (!worker.waitFor(2, TimeUnit.SECONDS)) {
+                worker.destroyForcibly();
+            }
+        }
+    }
+
+    // === the trigram counts on the wire: how many non-zero, then (index, count) pairs ===
+    static void writeCounts(DataOutputStream out, int[] counts) throws IOException {
+        int nonZero = 0;
+        for (int count : counts) {
+            if (count != 0) {
+                nonZero++;
+            }
+        }
+        out.writeInt(counts.length);
+        out.writeInt(nonZero);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                out.writeInt(i);
+                out.writeInt(counts[i]);
+            }
+        }
+    }
+
+    static int[] readCounts(DataInputStream in) throws IOException {
+        int[] counts = new int[in.readInt()];
+        int nonZero = in.readInt();
+        for (int k = 0; k < nonZero; k++) {
+            int index = in.readInt();
+            counts[index] = in.readInt();
+        }
+        return counts;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            // nothing useful to do here
+        }
+    }
+
+    /**
+     * Usage: java cryptographyproject.KeySearchCoordinator <cipher file> [options]
+     *   --workers N              worker JVMs to start on this machine (default 3)
+     *   --seeds N                how many restart seeds to try in total (default 200)
+     *   --unit N                 seeds per work unit (default 10)
+     *   --threshold X            stop early at this word score per letter (default 0.35, 0 = never)
+     *   --kill-worker-after MS   kill the first worker after MS milliseconds (for testing)
+     *   --worker-timeout MS      give up on a worker that is quiet this long during a unit (default 30000)
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: <cipher file> [--workers N] [--seeds N] [--unit N] [--threshold X] [--kill-worker-after MS] [--worker-timeout MS]");
+            return;
+        }
+        int workerCount = 3;
+        long totalSeeds = 200;
+        int seedsPerUnit = 10;
+        double threshold = 0.35;
+        long killAfter = -1;
+        long workerTimeout = DEFAULT_WORKER_TIMEOUT_MILLIS;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--workers": workerCount = Integer.parseInt(args[i + 1]); break;
+                case "--seeds": totalSeeds = Long.parseLong(args[i + 1]); break;
+                case "--unit": seedsPerUnit = Integer.parseInt(args[i + 1]); break;
+                case "--threshold": threshold = Double.parseDouble(args[i + 1]); break;
+                case "--kill-worker-after": killAfter = Long.parseLong(args[i + 1]); break;
+                case "--worker-timeout": workerTimeout = Long.parseLong(args[i + 1]); break;
+                default: System.out.println("Ignoring unknown option " + args[i]);
+            }
+        }
+
+        CryptoAnalyzer analyzer = new CryptoAnalyzer(args[0]);
+        if (!analyzer.isFileLoaded() || !analyzer.isDictionaryLoaded()) {
+            System.out.println("Need both the ciphertext and dictionary.txt. Exiting.");
+            return;
+        }
+
+        KeySearchCoordinator coordinator;
+        try {
+            coordinator = new KeySearchCoordinator(analyzer, threshold, workerTimeout);
+        } catch (IllegalArgumentException e) {
+            System.out.println("!! ERROR: " + e.getMessage());
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int port = coordinator.listen();
+            System.out.println("Coordinator listening on 127.0.0.1:" + port + ", starting " + workerCount + " workers...");
+            coordinator.spawnLocalWorkers(workerCount, port);
+        } catch (IOException e) {
+            System.out.println("Oh no, could not start the coordinator: " + e.getMessage());
+            return;
+        }
+
+        if (killAfter >= 0) {
+            long delay = killAfter;
+            Thread killer = new Thread(() -> {
+                try {
+                    Thread.sleep(delay);
+                    coordinator.killWorker(0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            killer.setDaemon(true);
+            killer.start();
+        }
+
+        boolean completed = coordinator.search(totalSeeds, seedsPerUnit, TimeUnit.MINUTES.toMillis(30));
+        coordinator.shutdownWorkers();
+
+        System.out.printf("%nSearch %s after %d seeds in %.1f s%n",
+            coordinator.wasStoppedEarly() ? "stopped early (threshold reached)" : (completed ? "finished" : "timed out"),
+            coordinator.getSeedsTried(), (System.nanoTime() - start) / 1e9);
+        byte[] key = coordinator.getBestKey();
+        if (key == null) {
+            System.out.println("No key found (did any worker connect?).");
+            return;
+        }
+        StringBuilder plain = new StringBuilder();
+        for (byte b : key) {
+            plain.append((char) ('a' + b));
+        }
+        System.out.println("  cipher: abcdefghijklmnopqrstuvwxyz");
+        System.out.println("  plain : " + plain);
+        System.out.printf("  model score %.1f, word score %.3f per letter%n", coordinator.getBestScore(), coordinator.getBestWordScore());
+    }
+}
@@ -0,0 +1,85 @@
+package cryptographyproject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Set;
+
+// this is one worker process for the distributed key search.
+// it connects to the KeySearchCoordinator, gets the S6 trigram counts once,
+// and then keeps asking for seed ranges. for every seed it runs one KeySolver
+// hill climb and sends the key + score straight back, so the coordinator
+// always knows the best key so far.
+//
+// the coordinator normally starts these for you, but you can also start one by hand:
+//   java cryptographyproject.KeySearchWorker <host> <port> [dictionary file]
+public class KeySearchWorker {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: <coordinator host> <port> [dictionary file]");
+            return;
+        }
+        String dictionaryFile = (args.length > 2) ? args[2] : "dictionary.txt";
+        Set<String> dictionary = CryptoAnalyzer.loadDictionary(dictionaryFile);
+        if (dictionary == null) {
+            System.out.println("!! " + dictionaryFile + " not found. Worker exiting.");
+            return;
+        }
+        KeySolver solver = new KeySolver(new LanguageModel(dictionary));
+
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            run(solver, in, out);
+        } catch (EOFException e) {
+            // coordinator hung up, that's how it tells us to stop early
+        } catch (IOException e) {
+            System.out.println("Worker lost the coordinator: " + e.getMessage());
+        }
+    }
+
+    // the message loop: JOB once, then WORK until STOP
+    private static void run(KeySolver solver, DataInputStream in, DataOutputStream out) throws IOException {
+        int[] trigramCounts = null;
+        while (true) {
+            byte type = in.readByte();
+            switch (type) {
+                case KeySearchCoordinator.MSG_JOB:
+                    trigramCounts = KeySearchCoordinator.readCounts(in);
+                    break;
+
+                case KeySearchCoordinator.MSG_WORK:
+                    int unitId = in.readInt();
+                    long firstSeed = in.readLong();
+                    int seeds = in.readInt();
+                    if (trigramCounts == null) {
+                        throw new IOException("got WORK before JOB");
+                    }
+                    for (long seed = firstSeed; seed < firstSeed + seeds; seed++) {
+                        KeySolver.Result result = solver.climbFromSeed(trigramCounts, seed);
+                        out.writeByte(KeySearchCoordinator.MSG_RESULT);
+                        out.writeInt(unitId);
+                        out.writeLong(seed);
+                        out.writeDouble(result.getScore());
+                        out.write(result.getKey());
+                        out.flush(); // send every result right away, not at the end
+                    }
+                    out.writeByte(KeySearchCoordinator.MSG_DONE);
+                    out.writeInt(unitId);
+                    out.flush();
+                    break;
+
+                case KeySearchCoordinator.MSG_STOP:
+                    return;
+
+                default:
+                    throw new IOException("unknown message type " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package cryptographyproject;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// this is the automatic key finder for the S6 (substitution) part.
+// instead of typing 'g h e' over and over, we let the computer guess a whole
+// key, score it with the LanguageModel, and keep swapping pairs of letters as
+// long as the score goes up (hill climbing). because hill climbing can get
+// stuck, we start over a few times from slightly shuffled keys (random restarts).
+//
+// the nice trick: the score only needs the S6 trigram *counts*, not the text.
+// sum over all cipher trigrams of count * log P(decrypted trigram), so the
+// cost per key doesn't depend on how long the ciphertext is, and counts from
+// many files that share one key can simply be added together.
+public class KeySolver {
+
+    // what the solver found
+    public static final class Result {
+        private final byte[] key;     // key[cipher code] = plain code
+        private final double score;   // language model score (higher is better)
+        private final long seed;      // the seed of the restart that found it
+
+        Result(byte[] key, double score, long seed) {
+            this.key = key;
+            this.score = score;
+            this.seed = seed;
+        }
+
+        public byte[] getKey() { return this.key.clone(); }
+        public double getScore() { return this.score; }
+        public long getSeed() { return this.seed; }
+
+        // the key written as 26 plain letters, in cipher order a..z
+        public String keyString() {
+            char[] letters = new char[26];
+            for (int i = 0; i < 26; i++) {
+                letters[i] = (char) ('a' + this.key[i]);
+            }
+            return new String(letters);
+        }
+    }
+
+    private final LanguageModel model;
+
+    public KeySolver(LanguageModel model) {
+        this.model = model;
+    }
+
+    // the trigram counts boiled down to just the ones that actually showed up
+    private static final class Counts {
+        final int size;
+        final byte[] a, b, c;
+        final int[] n;
+        final long[] letterCounts = new long[26];
+
+        Counts(int[] trigramCounts) {
+            int nonZero = 0;
+            for (int count : trigramCounts) {
+                if (count != 0) {
+                    nonZero++;
+                }
+            }
+            this.size = nonZero;
+            this.a = new byte[nonZero];
+            this.b = new byte[nonZero];
+            this.c = new byte[nonZero];
+            this.n = new int[nonZero];
+            int k = 0;
+            for (int index = 0; index < trigramCounts.length; index++) {
+                if (trigramCounts[index] == 0) {
+                    continue;
+                }
+                this.a[k] = (byte) (index / 676);
+                this.b[k] = (byte) (index / 26 % 26);
+                this.c[k] = (byte) (index % 26);
+                this.n[k] = trigramCounts[index];
+                this.letterCounts[index / 676] += trigramCounts[index];
+                k++;
+            }
+        }
+    }
+
+    /**
+     * Finds the best key it can for the given S6 trigram counts
+     * (what CryptoAnalyzer.countSegmentedGrams(9, 3, 6, 3) gives you).
+     * Every restart uses its own seed (seed, seed + 1, ...) so the same
+     * seeds always give the same answer. Seed 0 is the plain frequency guess.
+     * restarts has to be at least 1 (with 0 there'd be no key to give back).
+     */
+    public Result solve(int[] trigramCounts, long seed, int restarts) {
+        if (restarts < 1) {
+            throw new IllegalArgumentException("restarts must be at least 1");
+        }
+        Counts counts = new Counts(trigramCounts);
+        Result best = null;
+        for (int r = 0; r < restarts; r++) {
+            Result result = climb(counts, seed + r);
+            if (best == null || result.score > best.score) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    // just one restart, for when someone else hands out the seeds (KeySearchWorker)
+    public Result climbFromSeed(int[] trigramCounts, long seed) {
+        return climb(new Counts(trigramCounts), seed);
+    }
+
+    // one hill climb: start from the frequency guess, shake it a bit
+    // (more for some seeds than others, none at all for seed 0), then swap until stuck
+    private Result climb(Counts counts, long seed) {
+        Random random = new Random(seed);
+        byte[] key = frequencyGuess(counts);
+        int shuffleSwaps = (seed == 0) ? 0 : 3 + (int) Math.floorMod(seed, 8L);
+        for (int s = 0; s < shuffleSwaps; s++) {
+            swap(key, random.nextInt(26), random.nextInt(26));
+        }
+
+        double score = score(counts, key);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < 26; i++) {
+                for (int j = i + 1; j < 26; j++) {
+                    swap(key, i, j);
+                    double candidate = score(counts, key);
+                    if (candidate > score) {
+                        score = candidate;
+                        improved = true;
+                    } else {
+                        swap(key, i, j); // that made it worse, put it back
+                    }
+                }
+            }
+        }
+        return new Result(key, score, seed);
+    }
+
+    // the classic first guess: most common cipher letter = 'e', next = 't', and so on
+    private static byte[] frequencyGuess(Counts counts) {
+        Integer[] cipherOrder = new Integer[26];
+        for (int i = 0; i < 26; i++) {
+            cipherOrder[i] = i;
+        }
+        Arrays.sort(cipherOrder, (x, y) -> Long.compare(counts.letterCounts[y], counts.letterCounts[x]));
+        int[] englishOrder = LanguageModel.lettersByEnglishFrequency();
+        byte[] key = new byte[26];
+        for (int rank = 0; rank < 26; rank++) {
+            key[cipherOrder[rank]] = (byte) englishOrder[rank];
+        }
+        return key;
+    }
+
+    // the language model score of the S6 text decrypted with this key
+    private double score(Counts counts, byte[] key) {
+        double total = 0.0;
+        for (int k = 0; k < counts.size; k++) {
+            total += counts.n[k] * this.model.trigramLogProb(key[counts.a[k]], key[counts.b[k]], key[counts.c[k]]);
+        }
+        return total;
+    }
+
+    // same as above but for a key you already have (e.g. to compare two keys)
+    public double score(int[] trigramCounts, byte[] key) {
+        return score(new Counts(trigramCounts), key);
+    }
+
+    private static void swap(byte[] key, int i, int j) {
+        byte temp = key[i];
+        key[i] = key[j];
+        key[j] = temp;
+    }
+}
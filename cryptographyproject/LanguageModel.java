@@ -0,0 +1,116 @@
+package cryptographyproject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+// this is a tiny English "language model" for scoring candidate decryptions.
+// it gives every trigram (3 letters in a row) a log-probability, so a text
+// that reads like English gets a high total and gibberish gets a low one.
+//
+// we don't have a big English corpus in the project, so we learn the trigram
+// and bigram counts from the words in dictionary.txt, and mix in the usual
+// English single-letter frequencies so nothing ever gets a zero probability.
+public class LanguageModel {
+
+    // standard English letter frequencies in percent (a..z)
+    private static final double[] ENGLISH_LETTER_PERCENT = {
+        8.167, 1.492, 2.782, 4.253, 12.702, 2.228, 2.015, 6.094, 6.966, 0.153, 0.772, 4.025, 2.406,
+        6.749, 7.507, 1.929, 0.095, 5.987, 6.327, 9.056, 2.758, 0.978, 2.360, 0.150, 1.974, 0.074
+    };
+
+    // how much we trust each part when mixing them together
+    private static final double TRIGRAM_WEIGHT = 0.6;
+    private static final double BIGRAM_WEIGHT = 0.3;
+    private static final double UNIGRAM_WEIGHT = 0.1;
+
+    // trigramLogProb[(a * 26 + b) * 26 + c] = log P(c | a b), mixed
+    private final double[] trigramLogProb = new double[26 * 26 * 26];
+    // unigramLogProb[a] = log P(a)
+    private final double[] unigramLogProb = new double[26];
+
+    // builds the model from a list of clean lowercase words
+    public LanguageModel(Iterable<String> words) {
+        long[] bigramCounts = new long[26 * 26];
+        long[] trigramCounts = new long[26 * 26 * 26];
+        long[] bigramStarts = new long[26];        // how often each letter starts a bigram
+        long[] trigramStarts = new long[26 * 26];  // how often each pair starts a trigram
+
+        for (String word : words) {
+            for (int i = 0; i + 1 < word.length(); i++) {
+                int a = word.charAt(i) - 'a';
+                int b = word.charAt(i + 1) - 'a';
+                if (a < 0 || a >= 26 || b < 0 || b >= 26) {
+                    continue;
+                }
+                bigramCounts[a * 26 + b]++;
+                bigramStarts[a]++;
+                if (i + 2 < word.length()) {
+                    int c = word.charAt(i + 2) - 'a';
+                    if (c >= 0 && c < 26) {
+                        trigramCounts[(a * 26 + b) * 26 + c]++;
+                        trigramStarts[a * 26 + b]++;
+                    }
+                }
+            }
+        }
+
+        double[] unigram = new double[26];
+        for (int c = 0; c < 26; c++) {
+            unigram[c] = ENGLISH_LETTER_PERCENT[c] / 100.0;
+            this.unigramLogProb[c] = Math.log(unigram[c]);
+        }
+
+        // mix the three estimates together (add-one smoothing on the counts)
+        for (int a = 0; a < 26; a++) {
+            for (int b = 0; b < 26; b++) {
+                for (int c = 0; c < 26; c++) {
+                    double pBigram = (bigramCounts[b * 26 + c] + 1.0) / (bigramStarts[b] + 26.0);
+                    double pTrigram = (trigramCounts[(a * 26 + b) * 26 + c] + 1.0) / (trigramStarts[a * 26 + b] + 26.0);
+                    double p = TRIGRAM_WEIGHT * pTrigram + BIGRAM_WEIGHT * pBigram + UNIGRAM_WEIGHT * unigram[c];
+                    this.trigramLogProb[(a * 26 + b) * 26 + c] = Math.log(p);
+                }
+            }
+        }
+    }
+
+    // loads the words from a dictionary file (one word per line, same cleaning as CryptoAnalyzer)
+    public static LanguageModel fromDictionary(String dictFilename) throws IOException {
+        List<String> words = Files.readAllLines(Paths.get(dictFilename));
+        for (int i = 0; i < words.size(); i++) {
+            words.set(i, words.get(i).toLowerCase().trim().replaceAll("[^a-z]", ""));
+        }
+        return new LanguageModel(words);
+    }
+
+    // log P(c | a b) for three letter codes 0..25
+    public double trigramLogProb(int a, int b, int c) {
+        return this.trigramLogProb[(a * 26 + b) * 26 + c];
+    }
+
+    // same, but takes the flat index (a * 26 + b) * 26 + c
+    public double trigramLogProb(int trigramIndex) {
+        return this.trigramLogProb[trigramIndex];
+    }
+
+    // log P(a) for one letter code
+    public double unigramLogProb(int c) {
+        return this.unigramLogProb[c];
+    }
+
+    // the English letter codes ordered from most to least common (e, t, a, o, ...)
+    public static int[] lettersByEnglishFrequency() {
+        Integer[] order = new Integer[26];
+        for (int i = 0; i < 26; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(ENGLISH_LETTER_PERCENT[y], ENGLISH_LETTER_PERCENT[x]));
+        int[] result = new int[26];
+        for (int i = 0; i < 26; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+}
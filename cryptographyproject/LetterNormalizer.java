@@ -0,0 +1,212 @@
+package cryptographyproject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// this is the one place where raw text gets turned into clean letters.
+// it used to be toLowerCase().replaceAll("[^a-z]", "") all over the place,
+// which runs a regex over the whole file and makes two full copies on the way.
+//
+// here every raw byte (or char) is looked up in a 256-entry table that says
+// "letter code 0..25" or "skip me". there are two ways to use it:
+//
+//   - the static helpers write clean lowercase ASCII letters straight into a
+//     buffer you already have (that's what the cipher engines want)
+//   - an instance reads the raw input in chunks, packs the letters into a
+//     PackedLetters, and remembers WHERE in the raw input each letter was.
+//     that's one bit per raw byte ("is this a letter?") plus a letter count
+//     every 512 bytes, so clean offset -> raw offset is a quick lookup and
+//     we don't have to keep the raw text around just for that.
+//
+// only ASCII a-z/A-Z count as letters. (String.toLowerCase() also turns a few
+// odd Unicode letters like the Kelvin sign into 'k'; those are skipped here,
+// same as the pipeline and the container always did.)
+public final class LetterNormalizer {
+
+    // CODE[b] = letter code 0..25 for a-z/A-Z, -1 for everything else
+    private static final byte[] CODE = new byte[256];
+    // ASCII[b] = the lowercase letter for a-z/A-Z, 0 for everything else
+    private static final byte[] ASCII = new byte[256];
+    static {
+        Arrays.fill(CODE, (byte) -1);
+        for (int i = 0; i < 26; i++) {
+            CODE['a' + i] = (byte) i;
+            CODE['A' + i] = (byte) i;
+            ASCII['a' + i] = (byte) ('a' + i);
+            ASCII['A' + i] = (byte) ('a' + i);
+        }
+    }
+
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final int CHECKPOINT_WORDS = 8; // a letter count every 8 longs = 512 raw bytes
+
+    // === Static helpers (no offsets, just letters) ===
+
+    // letter code 0..25 of one raw byte or char, -1 if it isn't a letter
+    public static int letterCode(int c) {
+        return (c >= 0 && c < 256) ? CODE[c] : -1;
+    }
+
+    // the lowercase ASCII letter of one raw byte (any sign), 0 if it isn't a letter
+    public static byte asciiLetter(byte b) {
+        return ASCII[b & 0xFF];
+    }
+
+    // clean lowercase ASCII letters of 'raw' into out[outOff..]. gives back how many.
+    // out needs room for raw.length() letters in the worst case.
+    public static int lettersInto(CharSequence raw, byte[] out, int outOff) {
+        int length = outOff;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            byte letter = (c < 256) ? ASCII[c] : 0;
+            if (letter != 0) {
+                out[length++] = letter;
+            }
+        }
+        return length - outOff;
+    }
+
+    // same rule as toLowerCase().replaceAll("[^a-z]", ""), in one pass
+    public static String clean(CharSequence raw) {
+        byte[] letters = new byte[raw.length()];
+        int length = lettersInto(raw, letters, 0);
+        return new String(letters, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    // === Instances: letters + where they came from ===
+
+    private final PackedLetters letters;
+    private long[] isLetter;                 // bit i = raw position i is a letter
+    private long rawLength;
+    private int[] checkpoints;               // letters before long number k * CHECKPOINT_WORDS
+
+    private LetterNormalizer(long expectedRawLength) {
+        // most ciphertext files are nearly all letters, so guess that and let it grow
+        this.letters = new PackedLetters((int) Math.min(Integer.MAX_VALUE - 16, expectedRawLength));
+        this.isLetter = new long[(int) Math.max(16, (expectedRawLength + 63) / 64)];
+    }
+
+    // reads the whole stream in 64 KB chunks (the raw bytes never all sit in memory at once)
+    public static LetterNormalizer fromStream(InputStream in, long expectedRawLength) throws IOException {
+        LetterNormalizer normalizer = new LetterNormalizer(expectedRawLength);
+        byte[] chunk = new byte[CHUNK_BYTES];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            normalizer.feed(chunk, n);
+        }
+        normalizer.finish();
+        return normalizer;
+    }
+
+    // same for text that's already in memory (raw offsets are then char positions)
+    public static LetterNormalizer fromText(CharSequence raw) {
+        LetterNormalizer normalizer = new LetterNormalizer(raw.length());
+        normalizer.ensureBits(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            normalizer.take(letterCode(raw.charAt(i)));
+        }
+        normalizer.finish();
+        return normalizer;
+    }
+
+    private void feed(byte[] chunk, int count) {
+        ensureBits(count);
+        for (int i = 0; i < count; i++) {
+            take(CODE[chunk[i] & 0xFF]);
+        }
+    }
+
+    // one raw position: store the letter (if it is one) and mark the bit
+    private void take(int code) {
+        if (code >= 0) {
+            this.letters.add(code);
+            this.isLetter[(int) (this.rawLength >>> 6)] |= 1L << this.rawLength;
+        }
+        this.rawLength++;
+    }
+
+    private void ensureBits(int more) {
+        long wordsNeeded = (this.rawLength + more + 63) >>> 6;
+        if (wordsNeeded > this.isLetter.length) {
+            // grow by half, same idea as ArrayList
+            this.isLetter = Arrays.copyOf(this.isLetter, (int) Math.max(wordsNeeded, this.isLetter.length + (this.isLetter.length >> 1)));
+        }
+    }
+
+    // the letter counts at every checkpoint, worked out once at the end
+    private void finish() {
+        int words = (int) ((this.rawLength + 63) >>> 6);
+        this.isLetter = Arrays.copyOf(this.isLetter, words); // give back what we over-allocated
+        this.checkpoints = new int[Math.max(1, (words + CHECKPOINT_WORDS - 1) / CHECKPOINT_WORDS)];
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            if (w % CHECKPOINT_WORDS == 0) {
+                this.checkpoints[w / CHECKPOINT_WORDS] = count;
+            }
+            count += Long.bitCount(this.isLetter[w]);
+        }
+    }
+
+    public PackedLetters getLetters() { return this.letters; }
+    public long getRawLength() { return this.rawLength; }
+
+    // roughly how many bytes of heap the offset map takes (for the status message)
+    public long offsetMapBytes() {
+        return (long) this.isLetter.length * Long.BYTES + (long) this.checkpoints.length * Integer.BYTES;
+    }
+
+    /**
+     * Where clean letter number 'cleanOffset' was in the raw input (a byte
+     * position for streams, a char position for text). A binary search over
+     * the checkpoints, then counting bits in at most 8 longs.
+     */
+    public long rawOffsetOf(int cleanOffset) {
+        if (cleanOffset < 0 || cleanOffset >= this.letters.length()) {
+            throw new IndexOutOfBoundsException("clean offset " + cleanOffset + " of " + this.letters.length());
+        }
+        // the last checkpoint with at most cleanOffset letters before it
+        int low = 0;
+        int high = this.checkpoints.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (this.checkpoints[mid] <= cleanOffset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int remaining = cleanOffset - this.checkpoints[low];
+        int w = low * CHECKPOINT_WORDS;
+        while (true) {
+            long word = this.isLetter[w];
+            int inWord = Long.bitCount(word);
+            if (remaining < inWord) {
+                // drop the lowest set bits until the one we want is the lowest
+                for (int k = 0; k < remaining; k++) {
+                    word &= word - 1;
+                }
+                return ((long) w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            remaining -= inWord;
+            w++;
+        }
+    }
+
+    // how many clean letters come before raw position 'rawOffset'
+    public int cleanOffsetOf(long rawOffset) {
+        if (rawOffset <= 0) {
+            return 0;
+        }
+        if (rawOffset >= this.rawLength) {
+            return this.letters.length();
+        }
+        int w = (int) (rawOffset >>> 6);
+        int count = this.checkpoints[w / CHECKPOINT_WORDS];
+        for (int k = w - w % CHECKPOINT_WORDS; k < w; k++) {
+            count += Long.bitCount(this.isLetter[k]);
+        }
+        return count + Long.bitCount(this.isLetter[w] & ((1L << rawOffset) - 1));
+    }
+}
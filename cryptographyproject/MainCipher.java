@@ -3,6 +3,7 @@ package cryptographyproject;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Scanner;
@@ -11,8 +12,8 @@ import java.util.Scanner;
 public class MainCipher {
 
     // these are like the secret keys for our cipher. dont change them unless you know what you are doing.
+    // (the substitution table itself lives in CipherKey now, compiled into lookup tables)
     private static final String theAlphabet = "abcdefghijklmnopqrstuvwxyz";
-    private static final String substTable  = "hilwmkbdpcvazusjgrnqyxfote";
 
     // Master switch for verbose step-by-step tracing:
     //   null  -> ask the user at runtime
@@ -23,8 +24,10 @@ public class MainCipher {
     /**
      * The main method, it's the entry point. Kicks everything off.
      * we will ask the user what they want to do, encrypt or decrypt.
+     * pass --stats to print timing numbers for each step at the end.
      */
     public static void main(String[] args) {
+        boolean showStats = PerfStats.enableFromArgs(args);
         Scanner userInputReader = new Scanner(System.in); // making a scanner to get user choice.
         System.out.println("Do you want to (1) Encrypt or (2) Decrypt?");
         String choice = userInputReader.nextLine();
@@ -72,25 +75,35 @@ public class MainCipher {
         }
 
         userInputReader.close(); // closing the scanner is good practice.
+
+        if (showStats) {
+            PerfStats.printSummary();
+        }
     }
 
     // Backward-compatible wrapper
     public static String goEncrypt(String rawText) { return goEncrypt(rawText, true); }
 
     // Verbose-capable encryption
-    public static String goEncrypt(String rawText, boolean verbose) {
+    public static String goEncrypt(String rawText, boolean verbose) { return goEncrypt(rawText, verbose, CipherKey.DEFAULT); }
+
+    // same thing with any key
+    public static String goEncrypt(String rawText, boolean verbose, CipherKey key) {
         if (verbose) {
             System.out.println("\n--- ENCRYPT: Input (raw) ---");
             preview(rawText);
         }
 
-        String cleanText = rawText.toLowerCase().replaceAll("[^a-z]", "");
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.NORMALIZE);
+        String cleanText = LetterNormalizer.clean(rawText);
+        PerfStats.end(span, rawText.length());
         if (verbose) {
             System.out.println("\n[1] Normalize to letters-only (lowercase):");
             System.out.println("    " + cleanText);
             System.out.println("    length = " + cleanText.length());
         }
 
+        span = PerfStats.begin(PerfStats.Stage.PAD);
         StringBuilder textInProgress = new StringBuilder(cleanText);
         int letterToAdd = 0;
         while (textInProgress.length() % 9 != 0) {
@@ -98,6 +111,7 @@ public class MainCipher {
             letterToAdd++;
         }
         String readyText = textInProgress.toString();
+        PerfStats.end(span, readyText.length());
         if (verbose) {
             System.out.println("\n[2] Pad with \"xyz\" until length % 9 == 0:");
             System.out.println("    padded = " + readyText);
@@ -109,13 +123,14 @@ public class MainCipher {
         if (verbose) {
             System.out.println("\n[3] Process blocks of 9 (3 Caesar, 6 Substitution):");
         }
+        span = PerfStats.begin(PerfStats.Stage.ENCRYPT_BLOCKS);
         for (int i = 0, seg = 1; i < readyText.length(); i = i + 9, seg++) {
             String block = readyText.substring(i, i + 9);
             String caesarPart = block.substring(0, 3);
             String substPart  = block.substring(3, 9);
 
             char shiftChar = substPart.charAt(0);
-            int shiftKey = theAlphabet.indexOf(shiftChar);
+            int shiftKey = shiftChar - 'a';
 
             if (verbose) {
                 System.out.printf("%n  [Segment %d] block [%d..%d): \"%s\"%n", seg, i, i + 9, block);
@@ -125,7 +140,7 @@ public class MainCipher {
 
             StringBuilder caesarOut = new StringBuilder();
             for (char p : caesarPart.toCharArray()) {
-                int pIdx = theAlphabet.indexOf(p);
+                int pIdx = p - 'a';
                 int cIdx = (pIdx + shiftKey) % 26;
                 char c = theAlphabet.charAt(cIdx);
                 caesarOut.append(c);
@@ -139,8 +154,7 @@ public class MainCipher {
             }
             StringBuilder substOut = new StringBuilder();
             for (char p : substPart.toCharArray()) {
-                int pIdx = theAlphabet.indexOf(p);
-                char c = substTable.charAt(pIdx);
+                char c = key.substitute(p);
                 substOut.append(c);
                 if (verbose) {
                     System.out.printf("        %c -> %c (monoalphabetic)%n", p, c);
@@ -154,6 +168,8 @@ public class MainCipher {
             }
         }
 
+        PerfStats.end(span, readyText.length());
+
         if (verbose) {
             System.out.println("\n=== FINAL CIPHERTEXT ===");
             System.out.println(resultingCipher);
@@ -166,13 +182,18 @@ public class MainCipher {
     public static String goDecrypt(String cipherText) { return goDecrypt(cipherText, true); }
 
     // Verbose-capable decryption
-    public static String goDecrypt(String cipherText, boolean verbose) {
+    public static String goDecrypt(String cipherText, boolean verbose) { return goDecrypt(cipherText, verbose, CipherKey.DEFAULT); }
+
+    // same thing with any key
+    public static String goDecrypt(String cipherText, boolean verbose, CipherKey key) {
         if (verbose) {
             System.out.println("\n--- DECRYPT: Input (raw) ---");
             preview(cipherText);
         }
 
-        String lettersOnly = cipherText.toLowerCase().replaceAll("[^a-z]", "");
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.NORMALIZE);
+        String lettersOnly = LetterNormalizer.clean(cipherText);
+        PerfStats.end(span, cipherText.length());
         if (verbose) {
             System.out.println("\n[1] Normalize to letters-only (lowercase):");
             System.out.println("    " + lettersOnly);
@@ -187,6 +208,7 @@ public class MainCipher {
         if (verbose) {
             System.out.println("\n[2] Process blocks (expect 9 each: 3 CaesarCiph + 6 SubCiph):");
         }
+        span = PerfStats.begin(PerfStats.Stage.DECRYPT_BLOCKS);
         for (int i = 0, seg = 1; i < lettersOnly.length(); i += 9, seg++) {
             int end = Math.min(i + 9, lettersOnly.length());
             String block = lettersOnly.substring(i, end);
@@ -208,8 +230,7 @@ public class MainCipher {
 
             StringBuilder substPartDecrypted = new StringBuilder();
             for (char c : ciphSub.toCharArray()) {
-                int encIdx = substTable.indexOf(c);
-                char p = theAlphabet.charAt(encIdx);
+                char p = key.unsubstitute(c);
                 substPartDecrypted.append(p);
                 if (verbose) {
                     System.out.printf("        %c -> %c (inverse monoalphabetic)%n", c, p);
@@ -217,7 +238,7 @@ public class MainCipher {
             }
 
             char keyChar = substPartDecrypted.charAt(0);
-            int shiftKey = theAlphabet.indexOf(keyChar);
+            int shiftKey = keyChar - 'a';
 
             if (verbose) {
                 System.out.printf("    A) Caesar 3 letters (cipher): \"%s\"%n", ciphCaesar);
@@ -226,7 +247,7 @@ public class MainCipher {
 
             StringBuilder caesarPartDecrypted = new StringBuilder();
             for (char c : ciphCaesar.toCharArray()) {
-                int cIdx = theAlphabet.indexOf(c);
+                int cIdx = c - 'a';
                 int pIdx = (cIdx - shiftKey + 26) % 26; // The +26 handles negative results from subtraction
                 char p = theAlphabet.charAt(pIdx);
                 caesarPartDecrypted.append(p);
@@ -244,6 +265,7 @@ public class MainCipher {
         }
 
         String finalDecrypted = recoveredPlain.toString();
+        PerfStats.end(span, lettersOnly.length());
 
         if (verbose) {
             System.out.println("\n[3] Remove trailing padding \"x|y|z\" if present:");
@@ -253,6 +275,7 @@ public class MainCipher {
         // BUG FIX: The old while loop was too greedy and deleted real message characters.
         // This new logic is much safer. It looks for the specific padding patterns
         // in reverse order of length to avoid mistakes.
+        span = PerfStats.begin(PerfStats.Stage.UNPAD);
         String[] possiblePaddings = {
             "xyzxyzxy", // 8
             "xyzxyzx",  // 7
@@ -270,6 +293,7 @@ public class MainCipher {
                 break; // Found the padding and removed it, so we stop.
             }
         }
+        PerfStats.end(span, finalDecrypted.length());
 
 
         if (verbose) {
@@ -281,10 +305,80 @@ public class MainCipher {
         return finalDecrypted;
     }
 
+    // =========================================================================
+    // === Fast path helpers (no printing, no Strings)
+    // =========================================================================
+    // the block work itself is done by the compiled tables in CipherKey
+    // (encryptBlock/decryptPartialBlock), these are the padding rules around it
+    // that the fast paths, the pipeline and the container all share.
+
+    // the padding letter that goes at position i of the padding ("xyzxyz...")
+    static byte paddingLetter(int i) {
+        return (byte) "xyz".charAt(i % 3);
+    }
+
+    // same padding rule as goDecrypt: remove the longest "xyz..." suffix we find
+    // (8 letters down to 1). gives back the length without the padding.
+    static int stripPadding(byte[] text, int length) {
+        for (int pad = 8; pad >= 1; pad--) {
+            if (length < pad) {
+                continue;
+            }
+            boolean matches = true;
+            for (int k = 0; k < pad; k++) {
+                if (text[length - pad + k] != paddingLetter(k)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                return length - pad;
+            }
+        }
+        return length;
+    }
+
+    // the whole of goEncrypt (quiet) done with the compiled key tables:
+    // clean, pad, encrypt every block. this is the "fast path" CipherVerifier checks.
+    static String fastEncrypt(String rawText) {
+        return fastEncrypt(rawText, CipherKey.DEFAULT);
+    }
+
+    static String fastEncrypt(String rawText, CipherKey key) {
+        byte[] text = new byte[rawText.length() + 8];
+        int length = LetterNormalizer.lettersInto(rawText, text, 0);
+        int plainLength = length;
+        while (length % 9 != 0) {
+            text[length] = paddingLetter(length - plainLength);
+            length++;
+        }
+        for (int i = 0; i < length; i += 9) {
+            key.encryptBlock(text, i, text, i);
+        }
+        return new String(text, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    // the whole of goDecrypt (quiet) done with the compiled key tables
+    static String fastDecrypt(String cipherText) {
+        return fastDecrypt(cipherText, CipherKey.DEFAULT);
+    }
+
+    static String fastDecrypt(String cipherText, CipherKey key) {
+        byte[] text = new byte[cipherText.length()];
+        int length = LetterNormalizer.lettersInto(cipherText, text, 0);
+        for (int i = 0; i < length; i += 9) {
+            key.decryptPartialBlock(text, i, Math.min(9, length - i), text, i);
+        }
+        return new String(text, 0, stripPadding(text, length), StandardCharsets.ISO_8859_1);
+    }
+
     // a simple helper function to read a file, returns null if it fails.
     private static String readMyFile(String filename) {
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.FILE_READ);
         try {
-            return new String(Files.readAllBytes(Paths.get(filename)));
+            String text = new String(Files.readAllBytes(Paths.get(filename)));
+            PerfStats.end(span, text.length());
+            return text;
         } catch (IOException e) {
             System.out.println("Oh no, error reading file: " + filename);
             e.printStackTrace();
@@ -294,8 +388,10 @@ public class MainCipher {
 
     // another helper to write text to a file.
     private static void writeMyFile(String filename, String data) {
+        PerfStats.Span span = PerfStats.begin(PerfStats.Stage.FILE_WRITE);
         try (FileWriter fWriter = new FileWriter(new File(filename))) {
             fWriter.write(data);
+            PerfStats.end(span, data.length());
         } catch (IOException e) {
             System.out.println("Oh no, error writing file: " + filename);
             e.printStackTrace();
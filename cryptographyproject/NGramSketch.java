@@ -0,0 +1,414 @@
+package cryptographyproject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// this is the "approximate" way to count long n-grams (4, 5, 6 letters...).
+// the exact counters in CryptoAnalyzer use one int per possible n-gram, which
+// is fine for trigrams (17,576 slots) but 26^6 is over 300 million. so instead
+// we use a Count-Min sketch: 'depth' rows of 'width' counters, each row with
+// its own hash. adding an n-gram bumps one counter per row, and the estimate
+// is the smallest of those counters. it can only ever count too HIGH, never
+// too low, and (with probability 1 - delta) by at most epsilon * total.
+//
+//   width = ceil(e / epsilon),  depth = ceil(ln(1 / delta))
+//
+// next to the sketch we keep a small table of "heavy hitters" (the n-grams
+// with the biggest estimates so far), so we can print the top K at the end.
+// memory is fixed by epsilon, delta and K, no matter how much text we feed in.
+//
+// the sketch also knows the block layout (like getSegmentedFrequencies):
+// only n-grams that sit completely inside one segment of a block get counted.
+// blockSize 0 means "no blocks", i.e. the whole stream is one segment.
+public class NGramSketch {
+
+    public static final double DEFAULT_EPSILON = 0.001;
+    public static final double DEFAULT_DELTA = 0.01;
+    public static final int DEFAULT_TOP_K = 20;
+
+    // the n-gram codes are base 26 in a long, and addLetter works out gram * 26
+    // before it cuts it back down, so 26^(n+1) has to fit too: n can go up to 12
+    private static final int MAX_N = 12;
+
+    private final int n;
+    private final long gramModulus; // 26^n
+    private final double epsilon;
+    private final double delta;
+
+    // === the sketch itself ===
+    private final int width;
+    private final int depth;
+    private final int[][] table;
+    private final long[] hashMultipliers;
+    private final long[] hashOffsets;
+    private final int[] slotScratch; // reused by addGram so adding doesn't allocate
+    private long total; // how many n-grams we've added
+
+    // === heavy hitters: n-gram code -> estimated count ===
+    // a little open-addressing hash table of plain longs and ints (linear probing,
+    // EMPTY marks a free slot), so tracking a candidate never boxes anything
+    private static final long EMPTY = -1;
+    private final int topK;
+    private final int candidateCapacity;
+    private final long[] candidateCodes;
+    private final int[] candidateCounts;
+    private final int candidateMask;
+    private int candidateSize;
+    private int smallestCandidate; // the lowest count in the table once it's full
+
+    // === where we are in the stream (for the block layout) ===
+    private final int blockSize;
+    private final int segmentStart;
+    private final int segmentLength;
+    private long position;  // letters seen so far
+    private long gram;      // the last few letter codes, base 26
+    private int run;        // how many letters in a row we have inside the current segment
+
+    public NGramSketch(int n, int blockSize, int segmentStart, int segmentLength,
+                       double epsilon, double delta, int topK) {
+        if (n < 1 || n > MAX_N) {
+            throw new IllegalArgumentException("n must be between 1 and " + MAX_N);
+        }
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("epsilon and delta must be between 0 and 1");
+        }
+        if (topK < 1) {
+            throw new IllegalArgumentException("topK must be at least 1");
+        }
+        this.n = n;
+        long modulus = 1;
+        for (int k = 0; k < n; k++) {
+            modulus *= 26;
+        }
+        this.gramModulus = modulus;
+        this.epsilon = epsilon;
+        this.delta = delta;
+
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1.0 / delta));
+        this.table = new int[this.depth][this.width];
+        this.hashMultipliers = new long[this.depth];
+        this.hashOffsets = new long[this.depth];
+        this.slotScratch = new int[this.depth];
+        // fixed seed, so two runs over the same text give the same numbers
+        Random random = new Random(462);
+        for (int row = 0; row < this.depth; row++) {
+            this.hashMultipliers[row] = random.nextLong() | 1L; // must be odd
+            this.hashOffsets[row] = random.nextLong();
+        }
+
+        // we track a few more candidates than we print, so an n-gram that's
+        // climbing doesn't get thrown out just before it makes the top K
+        this.topK = topK;
+        this.candidateCapacity = topK * 4;
+        int slots = Integer.highestOneBit(this.candidateCapacity * 2 - 1) << 1; // a power of two, at most half full
+        this.candidateCodes = new long[slots];
+        this.candidateCounts = new int[slots];
+        this.candidateMask = slots - 1;
+        Arrays.fill(this.candidateCodes, EMPTY);
+
+        this.blockSize = blockSize;
+        this.segmentStart = segmentStart;
+        this.segmentLength = segmentLength;
+    }
+
+    // counts over the whole stream, no blocks
+    public static NGramSketch overall(int n, double epsilon, double delta, int topK) {
+        return new NGramSketch(n, 0, 0, 0, epsilon, delta, topK);
+    }
+
+    // === Feeding letters in ===
+
+    // one letter code (0..25) from the stream
+    public void addLetter(int code) {
+        if (insideSegment()) {
+            this.gram = (this.gram * 26 + code) % this.gramModulus;
+            this.run++;
+            if (this.run >= this.n) {
+                addGram(this.gram);
+            }
+        } else {
+            this.run = 0; // a C3 letter (or whatever is outside) breaks the n-gram
+            this.gram = 0;
+        }
+        this.position++;
+    }
+
+    // is the *next* letter inside the segment we count?
+    private boolean insideSegment() {
+        if (this.blockSize <= 0) {
+            return true;
+        }
+        int inBlock = (int) (this.position % this.blockSize);
+        if (inBlock == this.segmentStart) {
+            this.run = 0; // a new segment starts, don't glue it to the one before
+            this.gram = 0;
+        }
+        return inBlock >= this.segmentStart && inBlock < this.segmentStart + this.segmentLength;
+    }
+
+    // every letter of some text (anything that isn't a-z/A-Z is skipped, same as the cleaner)
+    public void addText(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            addChar(text.charAt(i));
+        }
+    }
+
+    // all the already-clean letters we have packed
+    public void addLetters(PackedLetters letters) {
+        for (int i = 0; i < letters.length(); i++) {
+            addLetter(letters.codeAt(i));
+        }
+    }
+
+    // reads a stream until the end, in chunks. we never hold more than one chunk,
+    // so this works for ciphertexts way bigger than memory.
+    public void addStream(Reader in) throws IOException {
+        char[] chunk = new char[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            for (int i = 0; i < read; i++) {
+                addChar(chunk[i]);
+            }
+        }
+    }
+
+    private void addChar(char c) {
+        if (c >= 'a' && c <= 'z') {
+            addLetter(c - 'a');
+        } else if (c >= 'A' && c <= 'Z') {
+            addLetter(c - 'A');
+        }
+    }
+
+    // === The sketch ===
+
+    // adds one n-gram (as a base 26 code). this is "conservative update":
+    // we only raise the counters that are at the current minimum, which keeps
+    // the over-counting smaller without breaking the "never too low" promise.
+    public void addGram(long code) {
+        int estimate = Integer.MAX_VALUE;
+        int[] slots = this.slotScratch;
+        for (int row = 0; row < this.depth; row++) {
+            slots[row] = slot(row, code);
+            estimate = Math.min(estimate, this.table[row][slots[row]]);
+        }
+        int updated = estimate + 1;
+        for (int row = 0; row < this.depth; row++) {
+            if (this.table[row][slots[row]] < updated) {
+                this.table[row][slots[row]] = updated;
+            }
+        }
+        this.total++;
+        trackCandidate(code, updated);
+    }
+
+    // our guess for how often this n-gram showed up (never lower than the truth)
+    public int estimate(long code) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            estimate = Math.min(estimate, this.table[row][slot(row, code)]);
+        }
+        return estimate;
+    }
+
+    // same thing for an n-gram written as letters, e.g. estimate("thes")
+    public int estimate(String letters) {
+        if (letters.length() != this.n) {
+            throw new IllegalArgumentException("expected " + this.n + " letters");
+        }
+        long code = 0;
+        for (int i = 0; i < letters.length(); i++) {
+            code = code * 26 + (letters.charAt(i) - 'a');
+        }
+        return estimate(code);
+    }
+
+    // which counter in this row the n-gram goes to (multiply + mix, then fold into the width)
+    private int slot(int row, long code) {
+        long hash = code * this.hashMultipliers[row] + this.hashOffsets[row];
+        hash ^= (hash >>> 29);
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= (hash >>> 32);
+        return (int) Math.floorMod(hash, (long) this.width);
+    }
+
+    // === Heavy hitters ===
+
+    private void trackCandidate(long code, int estimate) {
+        int index = findCandidate(code);
+        if (this.candidateCodes[index] == code) {
+            this.candidateCounts[index] = estimate;
+            return;
+        }
+        if (this.candidateSize < this.candidateCapacity) {
+            putCandidate(index, code, estimate);
+            if (this.candidateSize == this.candidateCapacity) {
+                this.smallestCandidate = this.candidateCounts[findSmallestCandidate()];
+            }
+            return;
+        }
+        if (estimate <= this.smallestCandidate) {
+            return; // not big enough to get in, this is the common case
+        }
+        // kick out the smallest one and take its place
+        removeCandidate(findSmallestCandidate());
+        putCandidate(findCandidate(code), code, estimate);
+        this.smallestCandidate = this.candidateCounts[findSmallestCandidate()];
+    }
+
+    // the slot that holds 'code', or the empty slot where it would go
+    private int findCandidate(long code) {
+        long mixed = code * 0x9E3779B97F4A7C15L;
+        int index = (int) (mixed ^ (mixed >>> 32)) & this.candidateMask;
+        while (this.candidateCodes[index] != EMPTY && this.candidateCodes[index] != code) {
+            index = (index + 1) & this.candidateMask;
+        }
+        return index;
+    }
+
+    private void putCandidate(int index, long code, int estimate) {
+        this.candidateCodes[index] = code;
+        this.candidateCounts[index] = estimate;
+        this.candidateSize++;
+    }
+
+    // empties a slot, then moves later entries of the same probe run back into
+    // the gap so findCandidate still finds them (no "deleted" markers needed)
+    private void removeCandidate(int index) {
+        int gap = index;
+        int next = (gap + 1) & this.candidateMask;
+        while (this.candidateCodes[next] != EMPTY) {
+            long mixed = this.candidateCodes[next] * 0x9E3779B97F4A7C15L;
+            int home = (int) (mixed ^ (mixed >>> 32)) & this.candidateMask;
+            // can the entry at 'next' move to 'gap'? only if its home isn't between them
+            if (((next - home) & this.candidateMask) >= ((next - gap) & this.candidateMask)) {
+                this.candidateCodes[gap] = this.candidateCodes[next];
+                this.candidateCounts[gap] = this.candidateCounts[next];
+                gap = next;
+            }
+            next = (next + 1) & this.candidateMask;
+        }
+        this.candidateCodes[gap] = EMPTY;
+        this.candidateSize--;
+    }
+
+    // the slot with the lowest count
+    private int findSmallestCandidate() {
+        int smallestIndex = -1;
+        for (int i = 0; i < this.candidateCodes.length; i++) {
+            if (this.candidateCodes[i] != EMPTY
+                    && (smallestIndex < 0 || this.candidateCounts[i] < this.candidateCounts[smallestIndex])) {
+                smallestIndex = i;
+            }
+        }
+        return smallestIndex;
+    }
+
+    // the top K n-grams, biggest first, as the usual "abcd" -> count map
+    // (so it goes straight into CryptoAnalyzer.printFrequencyMap, along with getTotal())
+    public Map<String, Integer> topGrams() {
+        List<Long> codes = new ArrayList<>();
+        for (long code : this.candidateCodes) {
+            if (code != EMPTY) {
+                codes.add(code);
+            }
+        }
+        // fresh estimates, a candidate's count may have gone up since we stored it
+        Map<Long, Integer> counts = new HashMap<>();
+        for (long code : codes) {
+            counts.put(code, estimate(code));
+        }
+        codes.sort((a, b) -> Integer.compare(counts.get(b), counts.get(a)));
+
+        Map<String, Integer> top = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(this.topK, codes.size()); i++) {
+            top.put(gramToString(codes.get(i)), counts.get(codes.get(i)));
+        }
+        return top;
+    }
+
+    private String gramToString(long code) {
+        char[] letters = new char[this.n];
+        for (int k = this.n - 1; k >= 0; k--) {
+            letters[k] = (char) ('a' + (code % 26));
+            code /= 26;
+        }
+        return new String(letters);
+    }
+
+    public int getN() { return this.n; }
+    public long getTotal() { return this.total; }
+    public int getWidth() { return this.width; }
+    public int getDepth() { return this.depth; }
+
+    // the most any estimate can be too high by (with probability 1 - delta)
+    public double getErrorBound() { return this.epsilon * this.total; }
+
+    // how much memory the counters take, it doesn't grow with the text
+    public long getSketchBytes() { return (long) this.width * this.depth * Integer.BYTES; }
+
+    /**
+     * Usage: java cryptographyproject.NGramSketch <file> [n] [all|c3|s6] [epsilon] [delta] [top K]
+     * streams the file (it's never loaded all at once) and prints the top n-grams.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: <file> [n] [all|c3|s6] [epsilon] [delta] [top K]");
+            return;
+        }
+        int n = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        String segment = (args.length > 2) ? args[2] : "s6";
+        double epsilon = (args.length > 3) ? Double.parseDouble(args[3]) : DEFAULT_EPSILON;
+        double delta = (args.length > 4) ? Double.parseDouble(args[4]) : DEFAULT_DELTA;
+        int topK = (args.length > 5) ? Integer.parseInt(args[5]) : DEFAULT_TOP_K;
+
+        NGramSketch sketch;
+        try {
+            sketch = forSegment(n, segment, epsilon, delta, topK);
+        } catch (IllegalArgumentException e) {
+            System.out.println("!! ERROR: " + e.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0]))) {
+            sketch.addStream(in);
+        } catch (IOException e) {
+            System.out.println("Oh no, error reading the file: " + e.getMessage());
+            return;
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        CryptoAnalyzer.printFrequencyMap(
+            "--- [Approx] Top " + topK + " " + n + "-gram Frequencies (" + segment + ") ---",
+            sketch.topGrams(),
+            topK,
+            sketch.getTotal()
+        );
+        System.out.printf("Counted %d %d-grams in %.1f ms using a %d x %d sketch (%d KB).%n",
+            sketch.getTotal(), n, millis, sketch.getDepth(), sketch.getWidth(), sketch.getSketchBytes() / 1024);
+        System.out.printf("Counts can be too high by at most %.1f (with %.1f%% probability).%n",
+            sketch.getErrorBound(), (1 - delta) * 100);
+    }
+
+    // the three layouts we always use for our 9-letter blocks
+    public static NGramSketch forSegment(int n, String segment, double epsilon, double delta, int topK) {
+        switch (segment) {
+            case "all": return overall(n, epsilon, delta, topK);
+            case "c3":  return new NGramSketch(n, 9, 0, 3, epsilon, delta, topK);
+            case "s6":  return new NGramSketch(n, 9, 3, 6, epsilon, delta, topK);
+            default: throw new IllegalArgumentException("segment must be all, c3 or s6");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package cryptographyproject;
+
+// this is a compact store for the clean ciphertext letters.
+// a String costs 2 bytes per letter, but we only ever have 26 different
+// letters, so 5 bits is enough. we pack 12 letters into each long (60 bits)
+// and leave the top 4 bits unused so no letter ever crosses two longs.
+// letters are stored as codes 0..25 ('a' = 0, 'z' = 25).
+public class PackedLetters {
+
+    private static final int BITS_PER_LETTER = 5;
+    private static final int LETTERS_PER_WORD = 12;
+    private static final long LETTER_MASK = 0x1FL;
+
+    private long[] words; // the packed letters
+    private int length;   // how many letters we actually hold
+
+    // makes an empty store with room for 'capacity' letters (it grows if needed)
+    public PackedLetters(int capacity) {
+        this.words = new long[Math.max(1, wordsFor(capacity))];
+        this.length = 0;
+    }
+
+    // this packs the letters of a String, skipping anything that isn't a-z/A-Z.
+    // (same cleaning rule as LetterNormalizer, which also keeps the raw offsets)
+    public static PackedLetters fromText(String text) {
+        PackedLetters packed = new PackedLetters(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            int code = LetterNormalizer.letterCode(text.charAt(i));
+            if (code >= 0) {
+                packed.add(code);
+            }
+        }
+        return packed;
+    }
+
+    // how many longs we need to hold n letters
+    private static int wordsFor(int n) {
+        return (n + LETTERS_PER_WORD - 1) / LETTERS_PER_WORD;
+    }
+
+    // add one letter code (0..25) at the end
+    public void add(int code) {
+        int wordIndex = this.length / LETTERS_PER_WORD;
+        if (wordIndex >= this.words.length) {
+            // grow by half, same idea as ArrayList
+            long[] bigger = new long[this.words.length + (this.words.length >> 1) + 1];
+            System.arraycopy(this.words, 0, bigger, 0, this.words.length);
+            this.words = bigger;
+        }
+        int shift = (this.length % LETTERS_PER_WORD) * BITS_PER_LETTER;
+        this.words[wordIndex] |= ((long) code & LETTER_MASK) << shift;
+        this.length++;
+    }
+
+    // random access: the letter code at position i
+    public int codeAt(int i) {
+        long word = this.words[i / LETTERS_PER_WORD];
+        return (int) ((word >>> ((i % LETTERS_PER_WORD) * BITS_PER_LETTER)) & LETTER_MASK);
+    }
+
+    // same as codeAt, but gives back the actual letter
+    public char charAt(int i) {
+        return (char) ('a' + codeAt(i));
+    }
+
+    // copies the 'count' letter codes starting at 'from' into out[outOff..].
+    // this is handy for grabbing a whole 9-letter block at once.
+    public void copyCodes(int from, int count, byte[] out, int outOff) {
+        int wordIndex = from / LETTERS_PER_WORD;
+        int slot = from % LETTERS_PER_WORD;
+        long word = this.words[wordIndex] >>> (slot * BITS_PER_LETTER);
+        for (int k = 0; k < count; k++) {
+            if (slot == LETTERS_PER_WORD) {
+                slot = 0;
+                wordIndex++;
+                word = this.words[wordIndex];
+            }
+            out[outOff + k] = (byte) (word & LETTER_MASK);
+            word >>>= BITS_PER_LETTER;
+            slot++;
+        }
+    }
+
+    // how many letters are in the store
+    public int length() { return this.length; }
+
+    // how many 9-letter blocks (the last one might be partial)
+    public int blockCount(int blockSize) {
+        return (this.length + blockSize - 1) / blockSize;
+    }
+
+    // roughly how many bytes of heap the letters take (for the status message)
+    public long packedBytes() {
+        return (long) this.words.length * Long.BYTES;
+    }
+
+    // turns the store back into a normal String (this makes a full copy!)
+    @Override
+    public String toString() {
+        char[] letters = new char[this.length];
+        for (int i = 0; i < this.length; i++) {
+            letters[i] = charAt(i);
+        }
+        return new String(letters);
+    }
+}
@@ -0,0 +1,197 @@
+package cryptographyproject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// this is the little stopwatch we use to see where the time goes.
+// you wrap a piece of work like this:
+//
+//   PerfStats.Span span = PerfStats.begin(PerfStats.Stage.NORMALIZE);
+//   ... do the work ...
+//   PerfStats.end(span, lettersProcessed);
+//
+// when stats are off (the default) begin() just hands back null and end()
+// returns right away, so it costs basically nothing. when they are on we add
+// up the time, letters and allocated bytes per stage, and we also send a
+// custom JDK Flight Recorder event so the stages show up in a JFR recording.
+public final class PerfStats {
+
+    // all the stages we measure, in the order we print them
+    public enum Stage {
+        FILE_READ("I/O: read file"),
+        FILE_WRITE("I/O: write file"),
+        NORMALIZE("cipher: normalize"),
+        PAD("cipher: pad"),
+        ENCRYPT_BLOCKS("cipher: encrypt blocks"),
+        DECRYPT_BLOCKS("cipher: decrypt blocks"),
+        UNPAD("cipher: unpad"),
+        LOAD("analyzer: load ciphertext"),
+        DICTIONARY_LOAD("analyzer: load dictionary"),
+        SINGLE_FREQUENCIES("analyzer: single letters"),
+        DIAGRAM_FREQUENCIES("analyzer: diagrams"),
+        TRIGRAM_FREQUENCIES("analyzer: trigrams"),
+        SEGMENT_FREQUENCIES("analyzer: segment letters"),
+        SEGMENT_DIAGRAMS("analyzer: segment diagrams"),
+        SEGMENT_TRIGRAMS("analyzer: segment trigrams"),
+        SKETCH_NGRAMS("analyzer: sketch n-grams"),
+        VALIDATION("analyzer: validation"),
+        BATCH_SCORING("analyzer: batch scoring"),
+        FULL_DECRYPTION("analyzer: full decryption");
+
+        private final String label;
+
+        Stage(String label) { this.label = label; }
+
+        public String getLabel() { return this.label; }
+    }
+
+    // the JFR event. JFR only records it if the event is enabled in the recording
+    // settings, e.g. java -XX:StartFlightRecording ... --stats
+    @Name("cryptographyproject.Stage")
+    @Label("Cipher Stage")
+    @Category("Crypto Project")
+    @Description("One measured stage of MainCipher or CryptoAnalyzer")
+    static final class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+
+        @Label("Letters")
+        long letters;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    // one piece of work that is being timed right now
+    public static final class Span {
+        private final Stage stage;
+        private final long startNanos;
+        private final long startAllocated;
+        private final StageEvent event;
+
+        private Span(Stage stage) {
+            this.stage = stage;
+            this.event = new StageEvent();
+            this.event.begin();
+            this.startAllocated = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+    }
+
+    private static volatile boolean enabled = false;
+
+    // running totals, one slot per stage (guarded by the class lock)
+    private static final int STAGES = Stage.values().length;
+    private static final long[] calls = new long[STAGES];
+    private static final long[] nanos = new long[STAGES];
+    private static final long[] letters = new long[STAGES];
+    private static final long[] allocated = new long[STAGES];
+
+    // we use the HotSpot extension to get bytes allocated per thread, if it's there
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = findAllocationBean();
+
+    private PerfStats() {} // only static stuff in here
+
+    private static com.sun.management.ThreadMXBean findAllocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+            if (hotspotBean.isThreadAllocatedMemorySupported()) {
+                hotspotBean.setThreadAllocatedMemoryEnabled(true);
+                return hotspotBean;
+            }
+        }
+        return null;
+    }
+
+    // bytes the current thread has allocated so far (0 if the JVM can't tell us)
+    public static long allocatedBytes() {
+        if (ALLOCATION_BEAN == null) {
+            return 0;
+        }
+        return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void setEnabled(boolean on) { enabled = on; }
+    public static boolean isEnabled() { return enabled; }
+
+    // turns stats on if "--stats" is one of the command line arguments
+    public static boolean enableFromArgs(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--stats")) {
+                setEnabled(true);
+            }
+        }
+        return enabled;
+    }
+
+    // starts timing a stage. returns null when stats are off.
+    public static Span begin(Stage stage) {
+        if (!enabled) {
+            return null;
+        }
+        return new Span(stage);
+    }
+
+    // stops timing and adds the numbers to the totals
+    public static void end(Span span, long lettersProcessed) {
+        if (span == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - span.startNanos;
+        long bytes = allocatedBytes() - span.startAllocated;
+
+        span.event.end();
+        if (span.event.shouldCommit()) {
+            span.event.stage = span.stage.getLabel();
+            span.event.letters = lettersProcessed;
+            span.event.allocatedBytes = bytes;
+            span.event.commit();
+        }
+
+        int i = span.stage.ordinal();
+        synchronized (PerfStats.class) {
+            calls[i]++;
+            nanos[i] += elapsed;
+            letters[i] += lettersProcessed;
+            allocated[i] += bytes;
+        }
+    }
+
+    // clears all the totals
+    public static synchronized void reset() {
+        for (int i = 0; i < STAGES; i++) {
+            calls[i] = 0;
+            nanos[i] = 0;
+            letters[i] = 0;
+            allocated[i] = 0;
+        }
+    }
+
+    // prints a table of everything we measured (stages that never ran are skipped)
+    public static synchronized void printSummary() {
+        System.out.println("\n--- Performance Stats ---");
+        System.out.printf("%-28s %7s %11s %10s %14s %12s%n",
+            "Stage", "Calls", "Total ms", "Avg ms", "Letters/s", "Alloc KB");
+        System.out.println("-------------------------------------------------------------------------------------");
+        for (Stage stage : Stage.values()) {
+            int i = stage.ordinal();
+            if (calls[i] == 0) {
+                continue;
+            }
+            double totalMillis = nanos[i] / 1e6;
+            double lettersPerSecond = (nanos[i] > 0) ? letters[i] * 1e9 / nanos[i] : 0.0;
+            System.out.printf("%-28s %7d %11.3f %10.3f %14.0f %12d%n",
+                stage.getLabel(), calls[i], totalMillis, totalMillis / calls[i], lettersPerSecond, allocated[i] / 1024);
+        }
+        System.out.println("-------------------------------------------------------------------------------------");
+    }
+}
@@ -0,0 +1,215 @@
+package cryptographyproject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// this is the "headless" AttackMain. instead of typing g/u/v/a commands by hand
+// it reads them from a script (or straight from the command line), runs them
+// one after the other with the same code the interactive loop uses
+// (AttackMain.runCommand), and writes down how long each one took and how
+// much it allocated. that way we can replay a slow session exactly, and
+// compare how responsive the tool is on big inputs between versions.
+//
+// a script is just one command per line, the same as you'd type them.
+// empty lines and lines starting with '#' are skipped.
+public class SessionReplay {
+
+    // what we measured for one command
+    static final class Step {
+        final int number;
+        final String command;
+        final double commandMillis; // the command itself
+        final double screenMillis;  // redrawing the guess map + partial text afterwards
+        final long allocatedBytes;  // for both
+
+        Step(int number, String command, double commandMillis, double screenMillis, long allocatedBytes) {
+            this.number = number;
+            this.command = command;
+            this.commandMillis = commandMillis;
+            this.screenMillis = screenMillis;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    // AttackMain hands over to us when it sees one of these
+    public static boolean isScripted(String[] args) {
+        return Arrays.asList(args).contains("--script") || Arrays.asList(args).contains("--commands");
+    }
+
+    /**
+     * Usage: java cryptographyproject.AttackMain --cipher <file> --script <file> [--report out.csv|out.json] [--quiet] [--stats]
+     *        java cryptographyproject.AttackMain --cipher <file> --commands "g h t; g m e; a" ...
+     */
+    public static void main(String[] args) {
+        boolean showStats = PerfStats.enableFromArgs(args);
+        String cipherFile = null;
+        String scriptFile = null;
+        String inlineCommands = null;
+        String reportFile = null;
+        boolean quiet = false;
+        for (int i = 0; i < args.length; i++) {
+            boolean needsValue = args[i].equals("--cipher") || args[i].equals("--script")
+                || args[i].equals("--commands") || args[i].equals("--report");
+            if (needsValue && i + 1 >= args.length) {
+                System.out.println("!! " + args[i] + " needs a value.");
+                printUsage();
+                return;
+            }
+            switch (args[i]) {
+                case "--cipher":   cipherFile = args[++i]; break;
+                case "--script":   scriptFile = args[++i]; break;
+                case "--commands": inlineCommands = args[++i]; break;
+                case "--report":   reportFile = args[++i]; break;
+                case "--quiet":    quiet = true; break;
+                case "--stats":    break;
+                default:
+                    System.out.println("!! Unknown option: " + args[i]);
+                    return;
+            }
+        }
+        if (cipherFile == null || (scriptFile == null && inlineCommands == null)) {
+            printUsage();
+            return;
+        }
+
+        List<String> commands;
+        try {
+            commands = (scriptFile != null) ? readScript(scriptFile) : splitInline(inlineCommands);
+        } catch (IOException e) {
+            System.out.println("Oh no, error reading the script: " + e.getMessage());
+            return;
+        }
+
+        PrintStream console = System.out;
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        List<Step> steps = new ArrayList<>();
+
+        // === Step 1: load, timed like a command ===
+        if (quiet) {
+            System.setOut(sink);
+        }
+        long allocatedBefore = PerfStats.allocatedBytes();
+        long start = System.nanoTime();
+        CryptoAnalyzer analyzer = new CryptoAnalyzer(cipherFile);
+        double loadMillis = (System.nanoTime() - start) / 1e6;
+        System.setOut(console);
+        if (!analyzer.isFileLoaded()) {
+            System.out.println("File not found or error reading file. Exiting.");
+            return;
+        }
+        steps.add(new Step(0, "(load " + cipherFile + ")", loadMillis, 0, PerfStats.allocatedBytes() - allocatedBefore));
+
+        // the tables are NOT all started in the background here (AttackMain does that).
+        // they'd be running on other cores while we time the commands, and the
+        // timings would depend on how far along they are. a command that prints
+        // a table starts just that one, and its time includes the counting.
+        AnalysisTables tables = new AnalysisTables(analyzer);
+
+        // === Step 2: run every command, no prompts ===
+        for (String command : commands) {
+            if (quiet) {
+                System.setOut(sink);
+            } else {
+                System.out.println("\n>>> " + command);
+            }
+            allocatedBefore = PerfStats.allocatedBytes();
+            start = System.nanoTime();
+            boolean keepGoing = AttackMain.runCommand(analyzer, tables, command);
+            long afterCommand = System.nanoTime();
+            if (keepGoing) {
+                AttackMain.printScreen(analyzer); // what the user would see next
+            }
+            long afterScreen = System.nanoTime();
+            long allocated = PerfStats.allocatedBytes() - allocatedBefore;
+            System.setOut(console);
+
+            steps.add(new Step(steps.size(), command, (afterCommand - start) / 1e6,
+                               keepGoing ? (afterScreen - afterCommand) / 1e6 : 0, allocated));
+            if (!keepGoing) {
+                break; // the script said 'q'
+            }
+        }
+        tables.shutdown();
+
+        // === Step 3: report ===
+        String report = (reportFile != null && reportFile.endsWith(".json"))
+            ? toJson(cipherFile, analyzer.getCleanLength(), steps)
+            : toCsv(steps);
+        if (reportFile == null) {
+            System.out.println();
+            System.out.print(report);
+        } else {
+            try {
+                Files.write(Paths.get(reportFile), report.getBytes());
+                System.out.println("Wrote timings for " + steps.size() + " steps to " + reportFile);
+            } catch (IOException e) {
+                System.out.println("Oh no, error writing the report: " + e.getMessage());
+            }
+        }
+        if (showStats) {
+            PerfStats.printSummary();
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: --cipher <file> (--script <file> | --commands \"g h t; a\") [--report out.csv|out.json] [--quiet]");
+    }
+
+    // one command per line, skipping blanks and '#' comments
+    static List<String> readScript(String scriptFile) throws IOException {
+        List<String> commands = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(scriptFile))) {
+            String command = line.trim();
+            if (!command.isEmpty() && !command.startsWith("#")) {
+                commands.add(command);
+            }
+        }
+        return commands;
+    }
+
+    // "g h t; g m e; a" -> three commands
+    static List<String> splitInline(String inline) {
+        List<String> commands = new ArrayList<>();
+        for (String part : inline.split(";")) {
+            if (!part.trim().isEmpty()) {
+                commands.add(part.trim());
+            }
+        }
+        return commands;
+    }
+
+    static String toCsv(List<Step> steps) {
+        StringBuilder csv = new StringBuilder("step,command,command_ms,screen_ms,allocated_bytes\n");
+        for (Step step : steps) {
+            csv.append(String.format(Locale.ROOT, "%d,\"%s\",%.3f,%.3f,%d%n", step.number,
+                step.command.replace("\"", "\"\""), step.commandMillis, step.screenMillis, step.allocatedBytes));
+        }
+        return csv.toString();
+    }
+
+    static String toJson(String cipherFile, int letters, List<Step> steps) {
+        double totalMillis = 0;
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"cipher\": \"").append(JsonText.escape(cipherFile)).append("\",\n");
+        json.append("  \"letters\": ").append(letters).append(",\n");
+        json.append("  \"steps\": [\n");
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            totalMillis += step.commandMillis + step.screenMillis;
+            json.append(String.format(Locale.ROOT,
+                "    {\"step\": %d, \"command\": \"%s\", \"commandMs\": %.3f, \"screenMs\": %.3f, \"allocatedBytes\": %d}%s%n",
+                step.number, JsonText.escape(step.command), step.commandMillis, step.screenMillis, step.allocatedBytes,
+                (i < steps.size() - 1) ? "," : ""));
+        }
+        json.append("  ],\n");
+        json.append(String.format(Locale.ROOT, "  \"totalMs\": %.3f%n}%n", totalMillis));
+        return json.toString();
+    }
+}
@@ -0,0 +1,240 @@
+package cryptographyproject;
+
+import java.util.Arrays;
+import java.util.Set;
+
+// this is the dictionary search behind validateText/scoreText, done without
+// making any garbage. the old way split the text into Strings, ran replaceAll
+// on every block and then called contains() once per dictionary word.
+//
+// here the dictionary goes into a trie (one node per letter prefix, flat int
+// arrays, no objects per node). to find words we start at every letter and
+// walk down the trie as far as the text lets us, so each position costs at
+// most "longest word" steps no matter how big the dictionary is.
+//
+// "have we already counted this word?" is a stamp array: seen[wordId] ==
+// currentStamp means yes. starting a new search just bumps the stamp, so we
+// never have to clear anything.
+//
+// the trie is shared (it never changes), but the scratch buffers are not, so
+// use one WordScorer per thread (withFreshScratch() makes another one cheaply).
+public class WordScorer {
+
+    private static final int BARRIER = 26; // anything that isn't a-z, words can't cross it
+
+    // === the trie (read-only after the constructor) ===
+    private final int[] children;   // node * 26 + letter -> child node, 0 = no child
+    private final int[] wordAtNode; // node -> word id that ends here, or -1
+    private final String[] words;   // word id -> the word
+
+    // === scratch, reused by every call ===
+    private int[] seenStamp;
+    private int stamp;
+    private int[] foundIds = new int[64]; // word ids found by the last search, in the order we found them
+    private int foundCount;
+    private byte[] fragment = new byte[64];
+    private byte[] combined = new byte[64];
+
+    public WordScorer(Set<String> dictionary) {
+        this.words = dictionary.toArray(new String[0]);
+        Arrays.sort(this.words); // so word ids (and the trie) don't depend on HashSet order
+
+        // worst case every letter of every word is a new node
+        int maxNodes = 1;
+        for (String word : this.words) {
+            maxNodes += word.length();
+        }
+        int[] childTable = new int[maxNodes * 26];
+        int[] wordTable = new int[maxNodes];
+        Arrays.fill(wordTable, -1);
+        int nodeCount = 1; // node 0 is the root
+
+        for (int id = 0; id < this.words.length; id++) {
+            String word = this.words[id];
+            int node = 0;
+            boolean usable = !word.isEmpty();
+            for (int i = 0; i < word.length() && usable; i++) {
+                int letter = word.charAt(i) - 'a';
+                if (letter < 0 || letter >= 26) {
+                    usable = false; // can never show up in letters-only text
+                    break;
+                }
+                int slot = node * 26 + letter;
+                if (childTable[slot] == 0) {
+                    childTable[slot] = nodeCount++;
+                }
+                node = childTable[slot];
+            }
+            if (usable) {
+                wordTable[node] = id;
+            }
+        }
+        this.children = Arrays.copyOf(childTable, nodeCount * 26);
+        this.wordAtNode = Arrays.copyOf(wordTable, nodeCount);
+        this.seenStamp = new int[this.words.length];
+    }
+
+    // same trie, its own scratch buffers
+    private WordScorer(WordScorer shared) {
+        this.children = shared.children;
+        this.wordAtNode = shared.wordAtNode;
+        this.words = shared.words;
+        this.seenStamp = new int[this.words.length];
+    }
+
+    public WordScorer withFreshScratch() {
+        return new WordScorer(this);
+    }
+
+    // === Scoring a String (the same rules validateText always had) ===
+
+    /**
+     * Strategy 1: every space-separated block's S6 part (after the first 3
+     * letters) with the '?' taken out; words found there score 2 x length.
+     * Strategy 2: the whole text with everything but a-z taken out; words
+     * not found yet score 1 x length. Each word counts once.
+     */
+    public int score(CharSequence text) {
+        startSearch();
+        int total = 0;
+        int length = text.length();
+
+        // === Strategy 1: words *inside* the S6 fragments ===
+        int blockStart = 0;
+        while (blockStart <= length) {
+            int blockEnd = blockStart;
+            while (blockEnd < length && text.charAt(blockEnd) != ' ') {
+                blockEnd++;
+            }
+            if (blockEnd - blockStart > 3) {
+                int fragmentLength = 0;
+                ensureFragment(blockEnd - blockStart);
+                for (int i = blockStart + 3; i < blockEnd; i++) {
+                    char c = text.charAt(i);
+                    if (c != '?') {
+                        this.fragment[fragmentLength++] = toCode(c);
+                    }
+                }
+                if (fragmentLength >= 2) {
+                    total += scan(this.fragment, fragmentLength, 2);
+                }
+            }
+            blockStart = blockEnd + 1;
+        }
+
+        // === Strategy 2: the combined letters, for words that span blocks ===
+        int combinedLength = 0;
+        ensureCombined(length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                this.combined[combinedLength++] = (byte) (c - 'a');
+            }
+        }
+        total += scan(this.combined, combinedLength, 1);
+        return total;
+    }
+
+    // === Scoring decoded letters straight from CryptoAnalyzer (no String at all) ===
+
+    /**
+     * Same score as score(text) for the text CryptoAnalyzer would render
+     * from these plain letter codes (-1 = unknown). With includeC3 false
+     * the C3 letters count as unknown, like the partial '___' view.
+     */
+    public int scoreBlocks(byte[] plain, int length, boolean includeC3) {
+        startSearch();
+        int total = 0;
+        ensureFragment(9);
+        ensureCombined(length);
+
+        // === Strategy 1 ===
+        for (int blockStart = 0; blockStart < length; blockStart += 9) {
+            int blockEnd = Math.min(blockStart + 9, length);
+            int fragmentLength = 0;
+            for (int i = blockStart + 3; i < blockEnd; i++) {
+                if (plain[i] >= 0) {
+                    this.fragment[fragmentLength++] = plain[i];
+                }
+            }
+            if (fragmentLength >= 2) {
+                total += scan(this.fragment, fragmentLength, 2);
+            }
+        }
+
+        // === Strategy 2 ===
+        int combinedLength = 0;
+        for (int i = 0; i < length; i++) {
+            if (plain[i] >= 0 && (includeC3 || i % 9 >= 3)) {
+                this.combined[combinedLength++] = plain[i];
+            }
+        }
+        total += scan(this.combined, combinedLength, 1);
+        return total;
+    }
+
+    // === The trie walk ===
+
+    // finds every dictionary word in codes[0..length), scores the new ones
+    private int scan(byte[] codes, int length, int weight) {
+        int total = 0;
+        for (int start = 0; start < length; start++) {
+            int node = 0;
+            for (int i = start; i < length; i++) {
+                int letter = codes[i];
+                if (letter == BARRIER) {
+                    break;
+                }
+                node = this.children[node * 26 + letter];
+                if (node == 0) {
+                    break; // no word starts like this
+                }
+                int wordId = this.wordAtNode[node];
+                if (wordId >= 0 && this.seenStamp[wordId] != this.stamp) {
+                    this.seenStamp[wordId] = this.stamp;
+                    total += this.words[wordId].length() * weight;
+                    addFound(wordId);
+                }
+            }
+        }
+        return total;
+    }
+
+    private void startSearch() {
+        this.stamp++;
+        if (this.stamp == Integer.MAX_VALUE) {
+            // only after ~2 billion searches, start the stamps over
+            Arrays.fill(this.seenStamp, 0);
+            this.stamp = 1;
+        }
+        this.foundCount = 0;
+    }
+
+    private void addFound(int wordId) {
+        if (this.foundCount == this.foundIds.length) {
+            this.foundIds = Arrays.copyOf(this.foundIds, this.foundIds.length * 2);
+        }
+        this.foundIds[this.foundCount++] = wordId;
+    }
+
+    private void ensureFragment(int size) {
+        if (this.fragment.length < size) {
+            this.fragment = new byte[Math.max(size, this.fragment.length * 2)];
+        }
+    }
+
+    private void ensureCombined(int size) {
+        if (this.combined.length < size) {
+            this.combined = new byte[Math.max(size, this.combined.length * 2)];
+        }
+    }
+
+    private static byte toCode(char c) {
+        return (c >= 'a' && c <= 'z') ? (byte) (c - 'a') : BARRIER;
+    }
+
+    // === What the last search found (for validateText's word list) ===
+
+    public int getFoundCount() { return this.foundCount; }
+    public String getFoundWord(int i) { return this.words[this.foundIds[i]]; }
+}